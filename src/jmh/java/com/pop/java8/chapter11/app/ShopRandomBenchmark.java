@@ -0,0 +1,86 @@
+package com.pop.java8.chapter11.app;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 14:00
+ *
+ * Shop生成价格和折扣码时所用随机数源的扩展性对比。
+ *  shared       原来的做法，所有线程共用一个java.util.Random，种子靠CAS更新
+ *  threadLocal  现在的做法，ThreadLocalRandom
+ *  splittable   每个线程从一个SplittableRandom拆分出自己的生成器
+ * 线程数从1到64依次运行，shared的吞吐量会随线程数增加而下降。
+ *
+ * 运行：mvn -Pjmh package && java -cp target/benchmarks.jar com.pop.java8.chapter11.app.ShopRandomBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopRandomBenchmark {
+
+    private static final Discount.Code[] CODES = Discount.Code.values();
+    private static final String PRODUCT = "myPhone27S";
+
+    @State(Scope.Benchmark)
+    public static class Shared{
+        final Random random = new Random();
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread{
+        SplittableRandom random;
+
+        @Setup
+        public void setup(Root root){
+            synchronized (root){
+                random = root.random.split();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Root{
+        final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public Discount.Code shared(Shared state){
+        double price = state.random.nextDouble() * PRODUCT.charAt(0) + PRODUCT.charAt(1);
+        return price < 0 ? null : CODES[state.random.nextInt(CODES.length)];
+    }
+
+    @Benchmark
+    public Discount.Code threadLocal(){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double price = random.nextDouble() * PRODUCT.charAt(0) + PRODUCT.charAt(1);
+        return price < 0 ? null : CODES[random.nextInt(CODES.length)];
+    }
+
+    @Benchmark
+    public Discount.Code splittable(PerThread state){
+        double price = state.random.nextDouble() * PRODUCT.charAt(0) + PRODUCT.charAt(1);
+        return price < 0 ? null : CODES[state.random.nextInt(CODES.length)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(ShopRandomBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.pop.java8.chapter7;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 20:40
+ *
+ * ConcurrentStream中并行求和的几种写法在不同输入大小和线程数下的对比。
+ *
+ * 并行流默认在公共池上执行，这里把它们提交到一个指定并行度的ForkJoinPool中，
+ * 流的并行任务就会在这个池里运行；forkJoinSum使用ForkJoinPools中名为forkJoinSum的池，
+ * 每组参数开始前按parallelism重新创建。
+ *
+ * main方法同时运行SequentialSumBenchmark，并打开GC profiler，
+ * 结果中的gc.alloc.rate.norm是每次调用分配的字节数，gc.count和gc.time是GC的次数和耗时。
+ * 也可以直接用JMH的命令行：java -jar target/benchmarks.jar chapter7 -prof gc
+ *
+ * 运行：mvn -Pjmh package && java -cp target/benchmarks.jar com.pop.java8.chapter7.ParallelSumBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ParallelSumBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public long n;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        pool = new ForkJoinPool(parallelism);
+        ForkJoinPools.shutdown(BrankMergeFramework.POOL);
+        System.setProperty("forkjoin.pool." + BrankMergeFramework.POOL + ".parallelism", String.valueOf(parallelism));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        pool.shutdown();
+        ForkJoinPools.shutdown(BrankMergeFramework.POOL);
+    }
+
+    @Benchmark
+    public long parallelSum(){
+        return pool.submit(() -> ConcurrentStream.parallelSum(n)).join();
+    }
+
+    @Benchmark
+    public long parallelIterateSum(){
+        return pool.submit(() -> ConcurrentStream.parallelIterateSum(n)).join();
+    }
+
+    @Benchmark
+    public long parallelRangedSum(){
+        return pool.submit(() -> ConcurrentStream.parallelRangedSum(n)).join();
+    }
+
+    @Benchmark
+    public long forkJoinSum(){
+        return BrankMergeFramework.forkJoinSum(n);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SequentialSumBenchmark.class.getSimpleName())
+                .include(ParallelSumBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
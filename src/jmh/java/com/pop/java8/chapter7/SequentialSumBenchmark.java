@@ -0,0 +1,44 @@
+package com.pop.java8.chapter7;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 20:40
+ *
+ * ConcurrentStream中顺序求和的几种写法，与ParallelSumBenchmark一起对比。
+ *
+ * measureSumPerf手写了10次循环，计时区间里还有System.out，也没有预热，
+ * JIT编译、死代码消除和打印都会影响结果。这里交给JMH：先预热，结果作为返回值交给JMH消费，
+ * 每组参数在单独的JVM中运行。
+ *
+ * 运行：mvn -Pjmh package && java -cp target/benchmarks.jar com.pop.java8.chapter7.ParallelSumBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SequentialSumBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public long n;
+
+    @Benchmark
+    public long sequentialSum(){
+        return ConcurrentStream.sequentialSum(n);
+    }
+
+    @Benchmark
+    public long iterativeSum(){
+        return ConcurrentStream.iterativeSum(n);
+    }
+
+    @Benchmark
+    public long rangedSum(){
+        return ConcurrentStream.rangedSum(n);
+    }
+}
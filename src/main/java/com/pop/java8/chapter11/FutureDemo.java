@@ -8,9 +8,13 @@ import java.util.concurrent.*;
  */
 public class FutureDemo {
 
-    public void demo1(){
+    /**
+     * 线程池只创建一次，所有调用复用，而不是每次调用都新建一个再也不关闭的线程池
+     */
+    private static final ExecutorService executor =
+            Executors.newCachedThreadPool(Futures.daemonThreadFactory("future-demo"));
 
-        ExecutorService executor = Executors.newCachedThreadPool();
+    public void demo1(){
 
         Future<Double> future = executor.submit(new Callable<Double>() {
             @Override
@@ -26,14 +30,27 @@ public class FutureDemo {
         try {
             Double result = future.get(1, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
-            e.printStackTrace();//中断异常
+            Thread.currentThread().interrupt();//恢复中断状态
+            future.cancel(true);
         } catch (ExecutionException e) {
             e.printStackTrace();//计算异常
         } catch (TimeoutException e) {
-            e.printStackTrace();//指定时间内没有返回，就抛出此异常
+            //指定时间内没有返回，就抛出此异常
+            future.cancel(true);//不再需要结果，中断还在执行的任务，不让它一直占着线程
         }
     }
 
-
+    /**
+     * 用CompletableFuture改写：超时由Futures的共享调度线程触发，
+     * 超时后返回一个默认值，同时中断还在执行的任务
+     */
+    public CompletableFuture<Double> demo2(){
+        CompletableFuture<Double> future = Futures.supplyInterruptibly(() -> {
+            Thread.sleep(5_000);//假设这是一个非常久的任务
+            return 0.6;
+        }, executor);
+        return Futures.within(future, 1, TimeUnit.SECONDS)
+                .exceptionally(e -> 0.0);
+    }
 
 }
@@ -0,0 +1,131 @@
+package com.pop.java8.chapter11;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 16:00
+ *
+ * Future相关的工具方法。
+ *
+ * Java 9才给CompletableFuture加上了orTimeout和completeOnTimeout，这里在Java 8上
+ * 用一个共享的调度线程实现同样的效果。另外，CompletableFuture的cancel(true)并不会
+ * 中断正在执行的任务，supplyInterruptibly返回的Future在被取消或者超时时会真正中断
+ * 执行任务的线程。
+ */
+public final class Futures {
+
+    /**
+     * 只负责到点触发（超时、定时刷新等），不执行具体的任务，一个线程就够了
+     */
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("future-scheduler"));
+
+    private Futures() {
+    }
+
+    public static ScheduledExecutorService scheduler(){
+        return scheduler;
+    }
+
+    /**
+     * 与Java 9的CompletableFuture.orTimeout相同：超时未完成时，
+     * future本身以TimeoutException异常完成，返回的仍然是同一个future
+     */
+    public static <T> CompletableFuture<T> orTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit){
+        if(!future.isDone()){
+            ScheduledFuture<?> timer = scheduler.schedule(
+                    () -> future.completeExceptionally(new TimeoutException()), timeout, unit);
+            future.whenComplete((v, e) -> timer.cancel(false));//先完成了就不再需要定时器
+        }
+        return future;
+    }
+
+    /**
+     * 与Java 9的CompletableFuture.completeOnTimeout相同：超时未完成时以value完成
+     */
+    public static <T> CompletableFuture<T> completeOnTimeout(CompletableFuture<T> future, T value,
+                                                             long timeout, TimeUnit unit){
+        if(!future.isDone()){
+            ScheduledFuture<?> timer = scheduler.schedule(() -> future.complete(value), timeout, unit);
+            future.whenComplete((v, e) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * 返回一个新的Future：future在timeout之内完成就取它的结果，否则以TimeoutException完成，
+     * 并取消原来的future。取消返回的Future也会取消原来的future
+     */
+    public static <T> CompletableFuture<T> within(CompletableFuture<T> future, long timeout, TimeUnit unit){
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if(result.completeExceptionally(new TimeoutException())){
+                future.cancel(true);
+            }
+        }, timeout, unit);
+        future.whenComplete((v, e) -> {
+            timer.cancel(false);
+            if(e != null){
+                result.completeExceptionally(e);
+            }else{
+                result.complete(v);
+            }
+        });
+        result.whenComplete((v, e) -> {
+            if(result.isCancelled()){
+                future.cancel(true);//调用方取消时，把取消传递给原始任务
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 类似supplyAsync，但返回的Future被取消或者异常完成（比如orTimeout超时）时，
+     * 会中断正在执行task的线程，而不是让它在后台继续运行。
+     * 执行器拒绝任务时不抛出异常，返回的Future以RejectedExecutionException结束
+     */
+    public static <T> CompletableFuture<T> supplyInterruptibly(Callable<T> task, Executor executor){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        FutureTask<T> futureTask = new FutureTask<T>(task){
+            @Override
+            protected void done() {
+                if(isCancelled()){
+                    future.cancel(false);
+                    return;
+                }
+                try {
+                    future.complete(get());
+                } catch (ExecutionException e) {
+                    future.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+        future.whenComplete((v, e) -> {
+            if(e != null){
+                futureTask.cancel(true);//取消或超时，中断任务
+            }
+        });
+        try {
+            executor.execute(futureTask);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 使用守护线程，不会阻止程序关停
+     */
+    public static ThreadFactory daemonThreadFactory(String prefix){
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
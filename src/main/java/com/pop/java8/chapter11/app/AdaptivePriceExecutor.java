@@ -0,0 +1,129 @@
+package com.pop.java8.chapter11.app;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 11:15
+ *
+ * 根据观察到的商店延迟自动调整线程数的有界执行器。
+ *
+ * 《Java并发编程实战》给出了线程池大小的估算公式：
+ *      N(threads) = N(cpu) * U(cpu) * (1 + W/C)
+ * 其中N(cpu)是可用内核数，U(cpu)是期望的CPU利用率，W/C是等待时间与计算时间的比率。
+ * BootStrap原来的做法是按商店数量一次性定好线程数，这里在每个任务结束后统计它的
+ * 墙钟时间和CPU时间，用指数加权平均估算W/C，然后按公式调整线程数，并把结果限制在
+ * [minThreads, maxThreads]之间，避免线程爆炸。队列是有界的，队列满了之后交给
+ * 拒绝策略处理，被拒绝的任务会计入统计。
+ */
+public class AdaptivePriceExecutor implements PriceExecutor {
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final long RESIZE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);//两次调整之间的最小间隔
+    private static final double ALPHA = 0.2;//加权平均中新样本所占的比重
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final double targetUtilization;
+    private final int cpus = Runtime.getRuntime().availableProcessors();
+
+    private final ThreadLocal<long[]> startTimes = ThreadLocal.withInitial(() -> new long[2]);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong lastResize = new AtomicLong(System.nanoTime());
+    private volatile double waitComputeRatio = -1;//还没有样本时为-1
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param initialThreads 还没有任何延迟样本时使用的线程数
+     */
+    public AdaptivePriceExecutor(int minThreads, int initialThreads, int maxThreads, int queueCapacity,
+                                 double targetUtilization, RejectedExecutionHandler handler) {
+        if(minThreads < 1 || initialThreads < minThreads || maxThreads < initialThreads){
+            throw new IllegalArgumentException("require 1 <= minThreads <= initialThreads <= maxThreads");
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetUtilization = targetUtilization;
+        this.pool = new ThreadPoolExecutor(initialThreads, initialThreads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                PriceExecutors.daemonThreadFactory("price-adaptive"),
+                (r, executor) -> {
+                    rejected.incrementAndGet();//记录之后交给真正的拒绝策略
+                    handler.rejectedExecution(r, executor);
+                }){
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                long[] start = startTimes.get();
+                start[0] = System.nanoTime();
+                start[1] = cpuTime();
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                long[] start = startTimes.get();
+                sample(System.nanoTime() - start[0], cpuTime() - start[1]);
+            }
+        };
+        this.pool.allowCoreThreadTimeOut(true);//空闲线程超时后回收
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        pool.execute(command);
+    }
+
+    private static long cpuTime(){
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * 记录一次任务的墙钟时间和CPU时间，必要时调整线程数
+     */
+    private void sample(long wallNanos, long cpuNanos){
+        long compute = Math.max(cpuNanos, 1);
+        double ratio = Math.max(wallNanos - cpuNanos, 0) / (double) compute;
+        double previous = waitComputeRatio;
+        waitComputeRatio = previous < 0 ? ratio : previous + ALPHA * (ratio - previous);
+
+        long now = System.nanoTime();
+        long last = lastResize.get();
+        if(now - last >= RESIZE_INTERVAL && lastResize.compareAndSet(last, now)){
+            resize(targetThreads());
+        }
+    }
+
+    /**
+     * 按公式计算出的目标线程数
+     */
+    int targetThreads(){
+        double ratio = Math.max(waitComputeRatio, 0);
+        long target = Math.round(cpus * targetUtilization * (1 + ratio));
+        return (int) Math.max(minThreads, Math.min(maxThreads, target));
+    }
+
+    private synchronized void resize(int target){
+        int current = pool.getMaximumPoolSize();
+        if(target == current){
+            return;
+        }
+        //扩容时先调大max，缩容时先调小core，保证core<=max始终成立
+        if(target > current){
+            pool.setMaximumPoolSize(target);
+            pool.setCorePoolSize(target);
+        }else{
+            pool.setCorePoolSize(target);
+            pool.setMaximumPoolSize(target);
+        }
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return new ExecutorStats(pool.getPoolSize(), pool.getActiveCount(),
+                pool.getQueue().size(), pool.getCompletedTaskCount(), rejected.get());
+    }
+}
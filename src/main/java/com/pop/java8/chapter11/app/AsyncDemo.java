@@ -1,5 +1,9 @@
 package com.pop.java8.chapter11.app;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.pop.java8.chapter11.app.Shop.delay;
 
 /**
@@ -41,6 +45,27 @@ class Discount{
                 Discount.apply(quote.getPrice(),quote.getDicountCode());
     }
 
+    /**
+     * 与applyDiscount相同，只是直接返回折扣后的价格，方便调用方比较价格
+     */
+    public static double discountedPrice(Quote quote){
+        return Discount.apply(quote.getPrice(),quote.getDicountCode());
+    }
+
+    /**
+     * 批量版本的折扣服务：一次远程调用处理一批Quote，只付出一次延迟，
+     * 返回值与quotes一一对应。BatchingDiscountClient会把零散的请求攒成批次调用它。
+     */
+    public static List<String> applyDiscounts(List<Quote> quotes){
+        delay();//整个批次只模拟一次 Discount 服务响应的延迟
+        List<String> result = new ArrayList<>(quotes.size());
+        for (Quote quote : quotes) {
+            result.add(quote.getShopName()+" price is "+
+                    quote.getPrice()*(100-quote.getDicountCode().percentage)/100);
+        }
+        return result;
+    }
+
     private static double apply(double price,Code code){
         delay();//模拟 Discount 服务响应的延迟
         return (price*(100-code.percentage)/100);
@@ -68,11 +93,15 @@ class Quote{
 
     public static Quote parse(String s){
         //根据新的查询方法，将会返回这样的结果 BestPrice:123.26:GOLD
-        String[] split = s.split(":");
-        String shopName = split[0];
-        double price = Double.parseDouble(split[1]);
-        Discount.Code discountCode = Discount.Code.valueOf(split[2]);
-        return new Quote(shopName,price,discountCode);
+        //不用split、parseDouble和valueOf，它们会产生大量临时对象，QuoteCodec只扫描一遍
+        return QuoteCodec.parse(s);
+    }
+
+    /**
+     * 从二进制格式解码，见QuoteCodec
+     */
+    public static Quote decode(ByteBuffer buffer){
+        return QuoteCodec.decode(buffer);
     }
 
     public String getShopName() {
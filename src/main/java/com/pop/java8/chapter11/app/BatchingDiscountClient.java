@@ -0,0 +1,112 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 14:20
+ *
+ * 批量调用折扣服务的客户端。
+ *
+ * 原来的流水线对每个Quote都单独调用一次Discount.applyDiscount，每次都要付出完整的
+ * delay()。这里把一段时间窗口内（或者攒够maxBatchSize个）的Quote合并成一批，
+ * 只调用一次Discount.applyDiscounts，然后再逐个完成每个调用方各自的Future。
+ * N家商店的折扣延迟由N次变成了大约每批一次。
+ */
+public class BatchingDiscountClient {
+
+    private final long window;
+    private final TimeUnit unit;
+    private final int maxBatchSize;
+    private final Executor executor;
+
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    public BatchingDiscountClient(long window, TimeUnit unit, int maxBatchSize, Executor executor) {
+        if(maxBatchSize < 1){
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.window = window;
+        this.unit = unit;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = executor;
+    }
+
+    /**
+     * 和Discount.applyDiscount的返回值相同，只是会等到所在的批次被发送出去才完成
+     */
+    public CompletableFuture<String> applyDiscount(Quote quote){
+        Pending request = new Pending(quote);
+        List<Pending> full = null;
+        synchronized (this){
+            pending.add(request);
+            if(pending.size() >= maxBatchSize){
+                full = drain();//攒够了一批，马上发送
+            }else if(pending.size() == 1){
+                //批次里的第一个请求负责开启时间窗口，到时间后在dispatcher上发送，不占用调度线程
+                timer = PriceExecutors.scheduler().schedule(
+                        () -> PriceExecutors.dispatcher().execute(this::flush), window, unit);
+            }
+        }
+        if(full != null){
+            dispatch(full);
+        }
+        return request.future;
+    }
+
+    /**
+     * 时间窗口到了，不管攒了多少都发送出去
+     */
+    public void flush(){
+        List<Pending> batch;
+        synchronized (this){
+            if(pending.isEmpty()){
+                return;
+            }
+            batch = drain();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending> drain(){
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if(timer != null){
+            timer.cancel(false);
+            timer = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch){
+        List<Quote> quotes = new ArrayList<>(batch.size());
+        for (Pending request : batch) {
+            quotes.add(request.quote);
+        }
+        CompletableFuture.supplyAsync(() -> Discount.applyDiscounts(quotes), executor)
+                .whenComplete((results, e) -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if(e != null){
+                            batch.get(i).future.completeExceptionally(e);
+                        }else{
+                            batch.get(i).future.complete(results.get(i));
+                        }
+                    }
+                });
+    }
+
+    private static class Pending{
+        private final Quote quote;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        Pending(Quote quote) {
+            this.quote = quote;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.pop.java8.chapter11.app;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Pop
@@ -29,12 +39,13 @@ public class BootStrap {
 
     /**
      * 假设一个商品列表
+     * 外面包了一层CachingShop，几秒之内对同一商品的重复查询直接从缓存返回
      */
 
-    public static List<Shop> shops = Arrays.asList(new Shop("BestPrice"),
+    public static List<Shop> shops = CachingShop.wrap(Arrays.asList(new Shop("BestPrice"),
                                     new Shop("LetsSaveBig"),
                                     new Shop("MyFavoriteShop"),
-            new Shop("BuyItAll"));
+            new Shop("BuyItAll")));
 
     /**
      * 你需要使用下面这样的签名实现一个方法，它接受产品名作为参数，返回一个字符串列表，
@@ -155,18 +166,24 @@ public class BootStrap {
          *
          *  真很奇怪，不升反降
          */
+//        bootStrap.demo4();
     }
 
-    public static final Executor executor =
-            Executors.newFixedThreadPool(Math.min(shops.size(),100),//设置一个阈值 查询商店数量分配最多100个，防止崩溃
-                    new ThreadFactory() {
-                        @Override
-                        public Thread newThread(Runnable r) {
-                            Thread thread = new Thread(r);
-                            thread.setDaemon(true);//使用守护线程，不会阻止程序关停
-                            return thread;
-                        }
-                    });
+    public void demo4(){
+        //每家商店最多等待1.5秒，没有返回的商店不再等待
+        long start = System.nanoTime();
+        System.out.println(findPricesWithin("myPhone27S", 1500, TimeUnit.MILLISECONDS).join());
+        long duration = (System.nanoTime()-start)/1_000_000;
+        System.out.println(" Done is "+duration+" msecs");
+    }
+
+    /**
+     * 原来的线程池用Executors.newFixedThreadPool(Math.min(shops.size(),100))创建，
+     * 在类加载时就按商店数量定好了大小，队列没有上限，也看不到运行情况。
+     * 现在交给PriceExecutors创建：默认根据商店的延迟和内核数自动调整线程数，队列有界，
+     * 并且可以通过getStats()查看活动、排队、完成和被拒绝的任务数。
+     */
+    public static final PriceExecutor executor = PriceExecutors.create(shops.size());
     /**
      * 注意，你现在正创建的是一个由守护线程构成的线程池。Java程序无法终止或者退出一个正
      * 在运行中的线程，所以最后剩下的那个线程会由于一直等待无法发生的事件而引发问题。与此相
@@ -201,24 +218,77 @@ public class BootStrap {
     /**
      * 让我们用异步的方式来构造这个方法
      * 构造同步和异步操作
+     *
+     * 同一个商品上并发的调用经过findPricesShared合并成一次查询，
+     * 共享的结果是只读的，这里复制一份，调用方仍然可以修改自己拿到的列表
      */
 
     public List<String> findPricesAys(String product){
+        return new ArrayList<>(findPricesShared(product).join());
+    }
+
+    /**
+     * 同一个商品上正在执行的查询，并发的相同查询共享同一个请求，完成后立即释放
+     */
+    public static final SingleFlight<String, List<String>> pricesInFlight = new SingleFlight<>();
+
+    /**
+     * 抢购时大量相同商品的查询同时到达，只有第一个真正向所有商店发起请求，
+     * 其余的调用方等待同一个结果。返回的列表是只读的，因为它被所有调用方共享
+     */
+    public CompletableFuture<List<String>> findPricesShared(String product){
+        return pricesInFlight.execute(product,
+                () -> findPricesFuture(product, executor).thenApply(Collections::unmodifiableList));
+    }
+
+    /**
+     * 按优先级排队的执行器，交互查询不会被批量重新定价的后台任务饿死
+     */
+    public static final PriorityPriceExecutor priorityExecutor = PriceExecutors.priority(shops.size());
+
+    /**
+     * 按指定的优先级执行查询，例如结账用INTERACTIVE，批量重新定价用BACKGROUND
+     */
+    public List<String> findPricesAys(String product, PriorityPriceExecutor.Priority priority){
+        return findPricesAys(product, priorityExecutor.forClass(priority));
+    }
+
+    /**
+     * 指定执行器的版本，比如 PriceExecutors.virtualOrElse(shops.size())
+     */
+    public List<String> findPricesAys(String product, Executor executor){
+        return findPricesFuture(product, executor).join();
+    }
+
+    /**
+     * findPricesAys的非阻塞版本：不在调用线程上join，等所有商店都完成后再汇总成列表
+     */
+    public CompletableFuture<List<String>> findPricesFuture(String product, Executor executor){
+        return findPricesFuture(shops, product, executor);
+    }
+
+    /**
+     * 查询指定的商店列表，例如LoadGenerator用模拟商店压测这条流水线，不需要替换静态的shops
+     */
+    public CompletableFuture<List<String>> findPricesFuture(List<Shop> shops, String product, Executor executor){
 
         List<CompletableFuture<String>> priceFutures =
                 shops.stream()
-                .map(shop -> CompletableFuture.//以异步的方式取得shop中指定的产品原始价格
-                        supplyAsync(()->shop.getPriceEnum(product),executor))
-                .map(future->future.thenApply(Quote::parse))//转化为对应的返回值
+                .map(shop -> ShopGuard.of(shop).//以异步的方式取得shop中指定的产品原始价格
+                        supplyAsync(()->PipelineMetrics.time(PipelineMetrics.SHOP_FETCH,shop.getName(),
+                                ()->shop.getPriceEnum(product)),executor))//经过熔断器和舱壁，出问题的商店直接失败
+                .map(future->future.thenApply(s->
+                        PipelineMetrics.time(PipelineMetrics.QUOTE_PARSE,()->Quote.parse(s))))//转化为对应的返回值
                 .map(future->future.thenCompose(quote ->//使用另一个异步任务构造期望的Future申请折扣
                         CompletableFuture.supplyAsync(//请求折扣代码
-                                ()->Discount.applyDiscount(quote),executor
+                                ()->PipelineMetrics.time(PipelineMetrics.DISCOUNT_APPLY,
+                                        ()->Discount.applyDiscount(quote)),executor
                         )))
                 .collect(Collectors.toList());
-        return priceFutures.stream()
-                .map(CompletableFuture::join)//将所有的Future结合起来，等待流中的所有Future执行完毕
-                //并提取各自的返回值
-                .collect(Collectors.toList());
+        return CompletableFuture.allOf(priceFutures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> priceFutures.stream()
+                        .map(CompletableFuture::join)//所有的Future都已经完成，依次提取各自的返回值
+                        .collect(Collectors.toList()));
         /**
          * 1. 获取价格
          *
@@ -263,6 +333,136 @@ public class BootStrap {
          */
     }
 
+    /**
+     * 与findPricesAys相同，只是商店的报价走二进制格式：写入线程复用的缓冲区再解码成Quote，
+     * 省掉了格式化和解析字符串的开销
+     */
+    public List<String> findPricesBinary(String product){
+        List<CompletableFuture<String>> priceFutures =
+                shops.stream()
+                        .map(shop -> CompletableFuture.supplyAsync(()->{
+                            ByteBuffer buffer = QuoteCodec.buffer();
+                            shop.getPriceEnum(product, buffer);
+                            buffer.flip();
+                            return Quote.decode(buffer);
+                        },executor))
+                        .map(future->future.thenCompose(quote ->
+                                CompletableFuture.supplyAsync(
+                                        ()->Discount.applyDiscount(quote),executor
+                                )))
+                        .collect(Collectors.toList());
+        return priceFutures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 商店超过自己的p95延迟还没有返回时发送对冲请求，对冲请求最多占总请求的10%
+     */
+    public static final Hedger hedger = new Hedger(0.95, 0.1);
+
+    /**
+     * 向一家商店查询报价，慢了就对冲。
+     * 命中缓存时直接返回，不经过Hedger，既不算请求数也不记录延迟，p95只反映真正发给商店的请求。
+     * 没有命中时原请求经过缓存，对冲请求绕过缓存直接发给商店，不会去等待原请求正在进行的加载
+     */
+    static CompletableFuture<String> hedgedQuote(Shop shop, String product){
+        String cached = CachingShop.cachedQuote(shop, product);
+        if(cached != null){
+            return CompletableFuture.completedFuture(cached);
+        }
+        return hedger.call(shop.getName(),()->shop.getPriceEnum(product),
+                ()->CachingShop.unwrap(shop).getPriceEnum(product),executor);
+    }
+
+    /**
+     * 与findPricesAys相同，只是向商店查询价格这一步交给hedgedQuote
+     */
+    public List<String> findPricesHedged(String product){
+        List<CompletableFuture<String>> priceFutures =
+                shops.stream()
+                        .map(shop -> hedgedQuote(shop, product))
+                        .map(future->future.thenApply(Quote::parse))
+                        .map(future->future.thenCompose(quote ->
+                                CompletableFuture.supplyAsync(
+                                        ()->Discount.applyDiscount(quote),executor
+                                )))
+                        .collect(Collectors.toList());
+        return priceFutures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 批量查询多个商品：每家商店只发一次请求，而不是商品数 × 商店数次。
+     * 和CompletableEvent.findPricesStream一样返回Future构成的流，每家商店返回时完成一个
+     */
+    public Stream<CompletableFuture<ShopQuotes>> findPricesBulkStream(List<String> products){
+        return shops.stream()
+                .map(shop -> CompletableFuture.supplyAsync(()->shop.getPricesEnum(products),executor)
+                        .thenApply(quotes -> new ShopQuotes(shop.getName(),
+                                quotes.stream().map(Quote::parse).collect(Collectors.toList()))));
+    }
+
+    /**
+     * 以商品 × 商店矩阵的形式返回批量查询的结果，重复的商品只查询一次。
+     * 每家商店返回时立刻填入矩阵并回调onShop，出错的商店不会影响其他商店，它那一列保持为空，
+     * 商店和异常记录在PriceMatrix.getFailed()中。onShop抛出的异常不会被吞掉，返回的Future以这个异常结束
+     */
+    public CompletableFuture<PriceMatrix> findPricesBulk(Collection<String> products, Consumer<ShopQuotes> onShop){
+        List<String> productList = new ArrayList<>(new LinkedHashSet<>(products));
+        List<String> shopNames = shops.stream().map(Shop::getName).collect(Collectors.toList());
+        PriceMatrix matrix = new PriceMatrix(productList, shopNames);
+        //findPricesBulkStream按shops的顺序返回，失败时从下标找到是哪一家商店
+        List<CompletableFuture<ShopQuotes>> perShop = findPricesBulkStream(productList).collect(Collectors.toList());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[perShop.size()];
+        for (int i = 0; i < futures.length; i++) {
+            String shopName = shopNames.get(i);
+            futures[i] = perShop.get(i).handle((shopQuotes, e) -> {
+                if(e != null){
+                    matrix.fail(shopName, e instanceof CompletionException ? e.getCause() : e);
+                    return null;
+                }
+                matrix.fill(shopQuotes.getShopName(), shopQuotes.getQuotes());
+                onShop.accept(shopQuotes);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> matrix);
+    }
+
+    /**
+     * 折扣服务的批量客户端：50毫秒内或者攒够100个Quote就发送一次
+     */
+    public static final BatchingDiscountClient discountClient =
+            new BatchingDiscountClient(50, TimeUnit.MILLISECONDS, 100, executor);
+
+    /**
+     * 与findPricesAys相同的流水线，只是折扣这一步交给BatchingDiscountClient，
+     * 所有商店的Quote合并成一次折扣服务调用
+     */
+    public List<String> findPricesBatched(String product){
+        List<CompletableFuture<String>> priceFutures =
+                shops.stream()
+                        .map(shop -> CompletableFuture.
+                                supplyAsync(()->shop.getPriceEnum(product),executor))
+                        .map(future->future.thenApply(Quote::parse))
+                        .map(future->future.thenCompose(discountClient::applyDiscount))
+                        .collect(Collectors.toList());
+        return priceFutures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * findPricesAys对每个Future调用join，最慢的那家商店决定了整个方法的耗时。
+     * 这里换成PriceQueryEngine，对每家商店设置截止时间，直接返回Future，
+     * 到点时拿到的就是已经返回的报价，以及超时或出错的商店。
+     */
+    public CompletableFuture<PriceReport> findPricesWithin(String product, long timeout, TimeUnit unit){
+        return new PriceQueryEngine(shops, executor, timeout, unit).query(product);
+    }
+
     /**
      * 将两个 CompletableFuture 对象整合起来，无论它们是否存在依赖
      *
@@ -282,32 +482,88 @@ public class BootStrap {
      * 第三个 CompletableFuture 对象，当前两个 CompletableFuture 计算出结果，并由
      * BiFunction方法完成合并后，由它来最终结束这一任务，代码清单如下所示。
      */
-    public void findPriceCombine(String product){
-
-        Shop shop=null;//假设对其中一家店进行设计
-
-        Future<Double> future =
-                CompletableFuture.
-                        supplyAsync(
-                                ()-> shop.getPrice(product))//获得原始价格和折扣码
-                        .thenCombine(CompletableFuture.supplyAsync(()->ExchangeService.getRate()),
-                                (price,rate)->price * rate);
-                        //这里，开启了第二个异步任务，去查询价格之间的利率，然后，会将第一个future
-        //和第二个合并起来，这里就是简单的乘法
-        /**
-         * 这里整合的操作只是简单的乘法操作，用另一个单独的任务对其进行操作有些浪费资源，所
-         * 以你只要使用thenCombine方法，无需特别求助于异步版本的thenCombineAsync方法。
-         */
+    public CompletableFuture<Double> findPriceCombine(String product){
+        //假设第一家商店以欧元计价
+        return findPriceCombine(shops.get(0), product, ExchangeService.Money.EUR, ExchangeService.Money.USD);
+    }
+
+    /**
+     * 查询某家商店的价格并换算成目标货币。
+     * 汇率不再在每次请求时同步调用ExchangeService，而是读取ExchangeRateTable定时刷新的快照，
+     * 只有在第一次刷新完成之前才需要等待。
+     * 这里整合的操作只是简单的乘法操作，用另一个单独的任务对其进行操作有些浪费资源，所
+     * 以你只要使用thenCombine方法，无需特别求助于异步版本的thenCombineAsync方法。
+     */
+    public CompletableFuture<Double> findPriceCombine(Shop shop, String product,
+                                                     ExchangeService.Money source, ExchangeService.Money target){
+        return CompletableFuture.supplyAsync(()->shop.getPrice(product),executor)
+                .thenCombine(Rates.TABLE.rate(source,target),
+                        (price,rate)->price * rate);
+    }
 
+    /**
+     * 第一次用到汇率时才开始定时刷新，每分钟一次
+     */
+    private static class Rates{
+        static final ExchangeRateTable TABLE = new ExchangeRateTable(executor).start(1, TimeUnit.MINUTES);
+    }
 
+    /**
+     * 分片模式：商店分给几个本机的工作进程查询，报价合并回来之后在本进程申请折扣。
+     * 工作进程的数量由系统属性price.shards指定，默认2个。
+     * 工作进程按名字新建普通的Shop，不经过shops上的CachingShop缓存
+     */
+    public List<String> findPricesSharded(String product){
+        return Shards.FINDER.findQuotes(product)
+                .thenCompose(quotes -> {
+                    List<CompletableFuture<String>> discounted = quotes.stream()
+                            .map(quote -> CompletableFuture.supplyAsync(()->Discount.applyDiscount(quote),executor))
+                            .collect(Collectors.toList());
+                    return CompletableFuture.allOf(discounted.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(v -> discounted.stream()
+                                    .map(CompletableFuture::join)
+                                    .collect(Collectors.toList()));
+                })
+                .join();
     }
 
+    /**
+     * 第一次使用分片模式时才启动工作进程
+     */
+    private static class Shards{
+        static final ShardedPriceFinder FINDER;
+        static {
+            try {
+                FINDER = ShardedPriceFinder.start(
+                        shops.stream().map(Shop::getName).collect(Collectors.toList()),
+                        Integer.getInteger("price.shards", 2));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 
 }
 
-//模仿折扣服务
+//模仿汇率服务
 class ExchangeService{
-    public static double getRate(){
-        return 0;//假设已经返回了利率
+
+    public enum Money{
+        USD(1.0), EUR(1.08), GBP(1.27), JPY(0.0067), CNY(0.14);
+        private final double usd;//一个单位折合多少美元
+        Money(double usd) {
+            this.usd = usd;
+        }
+    }
+
+    private static final Random random = new Random();
+
+    /**
+     * 远程查询汇率，和商店一样有1秒钟的延迟，汇率在基准值附近小幅波动
+     */
+    public static double getRate(Money source, Money destination){
+        Shop.delay();
+        double jitter = 1 + (random.nextDouble() - 0.5) / 100;
+        return source.usd / destination.usd * jitter;
     }
 }
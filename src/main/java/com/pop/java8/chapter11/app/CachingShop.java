@@ -0,0 +1,228 @@
+package com.pop.java8.chapter11.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 15:40
+ *
+ * 在Shop前面加一层价格缓存。
+ *
+ * BootStrap里的每一个findPrices*都会对同一个商品重新查询所有商店，而价格在几秒之内
+ * 几乎不会变化。CachingShop继承Shop，但自己不计算价格：Shop的每一个公开方法都先查缓存，
+ * 没有命中时转给被包装的delegate。所有商店共享同一组以(商店,商品)为key的PriceCache，
+ * 调用方不需要做任何修改。
+ *  getPrice                   缓存prices
+ *  getPriceEnum的文本和二进制版本 共用缓存quotes，二进制版本把缓存的报价编码进调用方的缓冲区
+ *  getPricesEnum              已经缓存的商品直接返回，其余的商品合成一次批量请求
+ *  getPriceAsync等异步方法     经过Shop.submitPrice，命中时直接返回已经完成的Future，
+ *                             否则在执行器上调用getPrice
+ *
+ * 缓存参数通过系统属性配置：
+ *  price.cache.ttl      过期时间，毫秒，默认5000，设置为0表示不使用缓存
+ *  price.cache.size     最大条目数，默认10000
+ *  price.cache.eviction LRU或LFU，默认LRU
+ *  price.quote.log      报价日志的路径，重启后从日志恢复还没有过期的报价，默认不记录
+ *  price.quote.log.ttl  从日志恢复的报价的有效期，毫秒，默认300000。
+ *                       重启通常比price.cache.ttl长，按缓存的TTL算，回放的报价几乎都已经过期，
+ *                       这个有效期只用于预热，之后新加载的报价仍然按price.cache.ttl过期
+ */
+public class CachingShop extends Shop {
+
+    static final long TTL = Long.getLong("price.cache.ttl", 5_000L);
+    static final int MAX_SIZE = Integer.getInteger("price.cache.size", 10_000);
+    static final long REPLAY_TTL = Long.getLong("price.quote.log.ttl", 300_000L);
+    static final PriceCache.Eviction EVICTION =
+            PriceCache.Eviction.valueOf(System.getProperty("price.cache.eviction", "LRU"));
+
+    public static final PriceCache<PriceKey,Double> prices =
+            new PriceCache<>(TTL, TimeUnit.MILLISECONDS, MAX_SIZE, EVICTION);
+    public static final PriceCache<PriceKey,String> quotes =
+            new PriceCache<>(TTL, TimeUnit.MILLISECONDS, MAX_SIZE, EVICTION);
+
+    /**
+     * 查询到的报价同时写入QuoteLog，重启时回放到quotes里。
+     * 系统属性price.quote.log指定日志文件，没有指定时不记录
+     */
+    static final QuoteLog journal = openJournal(System.getProperty("price.quote.log"));
+
+    private final Shop delegate;
+
+    public CachingShop(Shop delegate) {
+        super(delegate.getName());
+        this.delegate = delegate;
+    }
+
+    /**
+     * 去掉缓存这一层，返回真正查询价格的商店；不是CachingShop时原样返回
+     */
+    public static Shop unwrap(Shop shop){
+        return shop instanceof CachingShop ? ((CachingShop) shop).delegate : shop;
+    }
+
+    /**
+     * 已经缓存的报价，没有缓存或者不是CachingShop时返回null，不会触发加载
+     */
+    public static String cachedQuote(Shop shop, String product){
+        return shop instanceof CachingShop ? quotes.getIfPresent(new PriceKey(shop.getName(), product)) : null;
+    }
+
+    /**
+     * 按配置包装商店列表，没有开启缓存时原样返回
+     */
+    public static List<Shop> wrap(List<Shop> shops){
+        if(TTL <= 0){
+            return shops;
+        }
+        return shops.stream().map(CachingShop::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void setName(String name) {
+        delegate.setName(name);
+    }
+
+    @Override
+    public double getPrice(String product) {
+        return prices.get(new PriceKey(getName(), product), key -> delegate.getPrice(product));
+    }
+
+    @Override
+    public String getPriceEnum(String product) {
+        return quotes.get(new PriceKey(getName(), product), key -> load(product));
+    }
+
+    @Override
+    public void getPriceEnum(String product, ByteBuffer out) {
+        QuoteCodec.encode(Quote.parse(getPriceEnum(product)), out);
+    }
+
+    /**
+     * 没有缓存的商品一起交给delegate.getPricesEnum，只付出一次远程调用的延迟，
+     * 返回的报价再逐个放进缓存
+     */
+    @Override
+    public List<String> getPricesEnum(Collection<String> products) {
+        List<String> productList = new ArrayList<>(products);
+        List<String> result = new ArrayList<>(productList.size());
+        List<String> missing = new ArrayList<>();
+        for (String product : productList) {
+            String quote = quotes.getIfPresent(new PriceKey(getName(), product));
+            if(quote == null){
+                missing.add(product);
+            }
+            result.add(quote);
+        }
+        if(missing.isEmpty()){
+            return result;
+        }
+        List<String> loaded = delegate.getPricesEnum(missing);
+        for (int i = 0, next = 0; i < result.size(); i++) {
+            if(result.get(i) == null){
+                String product = productList.get(i);
+                String quote = loaded.get(next++);
+                //别的线程可能刚刚加载了同一个商品，以缓存中的为准；批量接口只返回文本，记日志时只能解析
+                result.set(i, quotes.get(new PriceKey(getName(), product), key -> {
+                    if(journal != null){
+                        record(product, QuoteCodec.parse(quote));
+                    }
+                    return quote;
+                }));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected CompletableFuture<Double> submitPrice(String product) {
+        Double price = prices.getIfPresent(new PriceKey(getName(), product));
+        if(price != null){
+            return CompletableFuture.completedFuture(price);
+        }
+        return super.submitPrice(product);
+    }
+
+    /**
+     * 没有报价日志时直接要文本报价；否则向delegate要二进制报价，解码出来的Quote写进日志，
+     * 再格式化成文本放进缓存，不需要把delegate格式化好的文本再解析一遍
+     */
+    private String load(String product){
+        if(journal == null){
+            return delegate.getPriceEnum(product);
+        }
+        //调用方可能正在使用线程本地的QuoteCodec.buffer()，这里单独分配
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 2 + 2 * getName().length());
+        delegate.getPriceEnum(product, buffer);
+        buffer.flip();
+        Quote quote = QuoteCodec.decode(buffer);
+        record(product, quote);
+        return QuoteCodec.format(quote.getShopName(), quote.getPrice(), quote.getDicountCode());
+    }
+
+    private static void record(String product, Quote quote){
+        journal.append(product, quote, System.currentTimeMillis());
+    }
+
+    /**
+     * 打开报价日志，把还没有过期的报价放回缓存，剩余的有效期按REPLAY_TTL和记录的时间计算。
+     * 记录的时间是墙上时钟（System.currentTimeMillis），重启前后时钟被往回调时，
+     * 算出来的年龄可能是负数，这里按0处理，最多只保留一个完整的REPLAY_TTL，不会变得更长
+     */
+    private static QuoteLog openJournal(String path){
+        if(path == null || TTL <= 0){
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            return QuoteLog.open(Paths.get(path), 64L << 20, (product, quote, timestamp) ->
+                    quotes.put(new PriceKey(quote.getShopName(), product),
+                            QuoteCodec.format(quote.getShopName(), quote.getPrice(), quote.getDicountCode()),
+                            REPLAY_TTL, Math.max(0, now - timestamp), TimeUnit.MILLISECONDS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static final class PriceKey{
+        private final String shop;
+        private final String product;
+
+        public PriceKey(String shop, String product) {
+            this.shop = shop;
+            this.product = product;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PriceKey)) return false;
+            PriceKey that = (PriceKey) o;
+            return shop.equals(that.shop) && product.equals(that.product);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shop, product);
+        }
+
+        @Override
+        public String toString() {
+            return shop + ":" + product;
+        }
+    }
+}
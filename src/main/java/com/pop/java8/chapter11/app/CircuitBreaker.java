@@ -0,0 +1,105 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 19:15
+ *
+ * 熔断器，三种状态：
+ *  CLOSED    正常放行，连续失败failureThreshold次之后进入OPEN
+ *  OPEN      直接拒绝，经过openDuration之后进入HALF_OPEN
+ *  HALF_OPEN 只放行一个试探请求，成功则回到CLOSED，失败则重新进入OPEN
+ *
+ * 每次状态变化都会开始一个新的代（generation）。tryAcquire返回放行时的代，
+ * 报告结果时带上它，不属于当前代的结果直接忽略：CLOSED时放出去的慢请求
+ * 在HALF_OPEN期间才返回，不能代替试探请求关闭或者重新打开熔断器。
+ */
+public class CircuitBreaker {
+
+    public enum State{ CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * tryAcquire拒绝调用时的返回值
+     */
+    public static final long REJECTED = -1;
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * 允许这次调用时返回当前的代，之后必须用它调用onSuccess、onFailure或onIgnored报告结果；
+     * 不允许时返回REJECTED
+     */
+    public synchronized long tryAcquire(){
+        switch (state){
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if(System.nanoTime() - openedAt < openNanos){
+                    return REJECTED;
+                }
+                transition(State.HALF_OPEN);
+                trialInFlight = true;
+                return generation;
+            default://HALF_OPEN
+                if(trialInFlight){
+                    return REJECTED;
+                }
+                trialInFlight = true;
+                return generation;
+        }
+    }
+
+    public synchronized void onSuccess(long permit){
+        if(permit != generation){
+            return;
+        }
+        failures = 0;
+        if(state != State.CLOSED){
+            transition(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure(long permit){
+        if(permit != generation){
+            return;
+        }
+        trialInFlight = false;
+        if(state == State.HALF_OPEN || ++failures >= failureThreshold){
+            transition(State.OPEN);
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * 调用没有真正执行，结果不计入统计，只是结束半开状态下的试探
+     */
+    public synchronized void onIgnored(long permit){
+        if(permit == generation){
+            trialInFlight = false;
+        }
+    }
+
+    private void transition(State next){
+        state = next;
+        generation++;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized State getState(){
+        return state;
+    }
+}
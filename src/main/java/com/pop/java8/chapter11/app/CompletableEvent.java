@@ -1,7 +1,9 @@
 package com.pop.java8.chapter11.app;
 
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 /**
@@ -47,9 +49,41 @@ public class CompletableEvent {
      * 行重构，实现findPricesStream方法来生成一个由CompletableFuture构成的流。
      */
     public static Stream<CompletableFuture<String>> findPricesStream(String product){
+        return findPricesStream(BootStrap.shops, product, BootStrap.executor);
+    }
+
+    /**
+     * 在BootStrap.priorityExecutor上按指定的优先级执行
+     */
+    public static Stream<CompletableFuture<String>> findPricesStream(String product,
+                                                                     PriorityPriceExecutor.Priority priority){
+        return findPricesStream(BootStrap.shops, product, BootStrap.priorityExecutor.forClass(priority));
+    }
+
+    /**
+     * 同样的流水线，商店列表和执行器由调用方指定，
+     * 例如用VirtualThreadPriceExecutor对上万家商店做对比测试
+     */
+    public static Stream<CompletableFuture<String>> findPricesStream(List<Shop> shops, String product,
+                                                                     Executor executor){
+        return shops.stream()
+                .map(shop -> CompletableFuture.supplyAsync(()->PipelineMetrics.time(PipelineMetrics.SHOP_FETCH,
+                        shop.getName(),()->shop.getPriceEnum(product)),executor))
+                .map(future->future.thenApply(s->
+                        PipelineMetrics.time(PipelineMetrics.QUOTE_PARSE,()->Quote.parse(s))))
+                .map(future->future.thenCompose(quote ->
+                        CompletableFuture.supplyAsync(
+                                ()->PipelineMetrics.time(PipelineMetrics.DISCOUNT_APPLY,
+                                        ()->Discount.applyDiscount(quote)),executor)));
+    }
+
+    /**
+     * 对慢商店发送对冲请求的版本，与BootStrap.findPricesHedged共用同一个Hedger，
+     * 命中率可以通过BootStrap.hedger查看
+     */
+    public static Stream<CompletableFuture<String>> findPricesStreamHedged(String product){
         return BootStrap.shops.stream()
-                .map(shop -> CompletableFuture.supplyAsync(()->shop.getPriceEnum(product),
-                        BootStrap.executor))
+                .map(shop -> BootStrap.hedgedQuote(shop, product))
                 .map(future->future.thenApply(Quote::parse))
                 .map(future->future.thenCompose(quote ->
                         CompletableFuture.supplyAsync(
@@ -73,6 +107,23 @@ public class CompletableEvent {
 
     }
 
+    /**
+     * 以PriceRace的方式查询价格，可以只取第一个、前k个或者足够好的价格，
+     * 并在提前结束时取消剩下的商店查询
+     */
+    public static PriceRace racePrices(String product){
+        return new PriceRace(BootStrap.shops, product, BootStrap.executor);
+    }
+
+    public void demo3(){
+        long start = System.nanoTime();
+        Offer offer = racePrices("myPhone27S")
+                .onBestSoFar(o -> System.out.println("best so far: " + o))
+                .firstAtMost(150)//只要不高于150就不再等其余的商店
+                .join();
+        System.out.println(offer + " (done in " + ((System.nanoTime() - start) / 1_000_000) + " msecs)");
+    }
+
     /**
      * 注意，和你之前看到的thenCompose和thenCombine方法一样，thenAccept方法也提供
      * 了一个异步版本，名为thenAcceptAsync。异步版本的方法会对处理结果的消费者进行调度，
@@ -126,6 +177,8 @@ public class CompletableEvent {
         CompletableFuture.allOf(futures).join();
         System.out.println("All shops have now responded in "
                 + ((System.nanoTime() - start) / 1_000_000) + " msecs");
+        //每个阶段、每家商店的延迟分布，看得出慢在商店还是折扣服务
+        PipelineMetrics.snapshot().forEach((name, s) -> System.out.println(name + " " + s));
         /**
          * LetsSaveBig price is 216.20100000000002 (done in 2168 msecs)
          * BuyItAll price is 186.18399999999997 (done in 2168 msecs)
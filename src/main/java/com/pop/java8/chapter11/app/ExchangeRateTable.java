@@ -0,0 +1,145 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.pop.java8.chapter11.app.ExchangeService.Money;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 20:10
+ *
+ * 定时刷新的内存汇率表。
+ *
+ * findPriceCombine原来每次请求都同步调用ExchangeService.getRate()。汇率的变化远没有
+ * 请求那么频繁，所以这里由定时任务在后台刷新，刷新的结果整体替换到一个volatile的快照里，
+ * 读取时不加锁，也不需要访问远程服务。
+ * 每次刷新只查询各币种对美元的汇率（并行查询），其余的交叉汇率由它们换算得到。
+ * 刷新失败时保留旧的快照，等下一次刷新。第一次加载失败时没有旧的快照可用，
+ * 等待汇率的调用方都会卡住，所以不等下一个周期，从1秒开始按指数退避重试，最长间隔30秒。
+ */
+public class ExchangeRateTable {
+
+    private static final Money[] MONIES = Money.values();
+    private static final long FIRST_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final Executor executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final CompletableFuture<Snapshot> firstLoad = new CompletableFuture<>();
+    private volatile Snapshot snapshot;
+    private volatile long retryMillis = FIRST_RETRY_MILLIS;
+
+    public ExchangeRateTable(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 立刻刷新一次，之后每隔period刷新一次
+     */
+    public ExchangeRateTable start(long period, TimeUnit unit){
+        PriceExecutors.dispatcher().execute(this::refreshAsync);
+        //调度线程是共享的，只负责触发。executor满了时CallerRunsPolicy会在提交任务的线程上
+        //执行远程查询，所以经过dispatcher提交，不会占用调度线程
+        PriceExecutors.scheduler().scheduleAtFixedRate(
+                () -> PriceExecutors.dispatcher().execute(this::refreshAsync), period, period, unit);
+        return this;
+    }
+
+    /**
+     * 上一次刷新还没有结束时跳过这一次。
+     * 提交查询时同步抛出的异常（比如执行器拒绝）也按刷新失败处理，不会向外抛出：
+     * 从scheduleAtFixedRate抛出的异常会让之后的定时刷新全部悄悄停掉
+     */
+    public void refreshAsync(){
+        if(!refreshing.compareAndSet(false, true)){
+            return;
+        }
+        try {
+            List<CompletableFuture<Double>> toUsd = Stream.of(MONIES)
+                    .map(money -> money == Money.USD
+                            ? CompletableFuture.completedFuture(1.0)
+                            : CompletableFuture.supplyAsync(() -> ExchangeService.getRate(money, Money.USD), executor))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(toUsd.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(v -> new Snapshot(toUsd.stream().mapToDouble(CompletableFuture::join).toArray()))
+                    .whenComplete((next, e) -> {
+                        if(e != null){
+                            refreshFailed(e);
+                            return;
+                        }
+                        refreshing.set(false);
+                        snapshot = next;
+                        firstLoad.complete(next);
+                    });
+        } catch (RuntimeException e) {
+            refreshFailed(e);
+        }
+    }
+
+    /**
+     * 保留旧的快照；还没有加载过时尽快重试
+     */
+    private void refreshFailed(Throwable e){
+        refreshing.set(false);
+        System.err.println("exchange rate refresh failed: " + e);
+        if(snapshot == null){
+            retryFirstLoad();
+        }
+    }
+
+    private void retryFirstLoad(){
+        long delay = retryMillis;
+        retryMillis = Math.min(delay * 2, MAX_RETRY_MILLIS);
+        PriceExecutors.scheduler().schedule(
+                () -> PriceExecutors.dispatcher().execute(this::refreshAsync), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 当前快照中的汇率，还没有加载过时抛出IllegalStateException
+     */
+    public double getRate(Money source, Money target){
+        Snapshot current = snapshot;
+        if(current == null){
+            throw new IllegalStateException("exchange rates are not loaded yet");
+        }
+        return current.rate(source, target);
+    }
+
+    /**
+     * 已经加载过时返回一个已完成的Future，否则等待第一次刷新完成
+     */
+    public CompletableFuture<Double> rate(Money source, Money target){
+        Snapshot current = snapshot;
+        if(current != null){
+            return CompletableFuture.completedFuture(current.rate(source, target));
+        }
+        return firstLoad.thenApply(s -> s.rate(source, target));
+    }
+
+    /**
+     * 最近一次刷新的时间（System.currentTimeMillis），还没有加载过时为0
+     */
+    public long getLastUpdated(){
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.updatedAt;
+    }
+
+    private static class Snapshot{
+        private final double[] toUsd;//按Money的ordinal排列
+        private final long updatedAt = System.currentTimeMillis();
+
+        Snapshot(double[] toUsd) {
+            this.toUsd = toUsd;
+        }
+
+        double rate(Money source, Money target){
+            return toUsd[source.ordinal()] / toUsd[target.ordinal()];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 13:40
+ *
+ * 对比线程池和虚拟线程在大量商店同时查询时的吞吐量。
+ * 每家商店要经过两次1秒的delay（查询价格和折扣服务），
+ * 线程池的耗时大约是 2秒 * 商店数 / 线程数，而虚拟线程不受线程数的限制。
+ *
+ * 用法：java ExecutionModeDemo [商店数量，默认10000]
+ */
+public class ExecutionModeDemo {
+
+    private static long run(String name, List<Shop> shops, PriceExecutor executor){
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = CompletableEvent.findPricesStream(shops, "myPhone27S", executor)
+                .toArray(size -> new CompletableFuture<?>[size]);
+        CompletableFuture.allOf(futures).join();
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(name + ": " + shops.size() + " shops in " + duration + " msecs, "
+                + (shops.size() * 1000L / Math.max(duration, 1)) + " shops/sec, " + executor.getStats());
+        return duration;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        List<Shop> shops = IntStream.range(0, count)
+                .mapToObj(i -> new Shop("Shop" + i))
+                .collect(Collectors.toList());
+
+        PriceExecutor virtual = VirtualThreadPriceExecutor.createIfSupported();
+        if(virtual != null){
+            run("virtual", shops, virtual);
+        }else{
+            System.out.println("virtual threads need JDK 21+, only the pool is measured");
+        }
+        run("pool", shops, PriceExecutors.fixed(PriceExecutors.MAX_THREADS));
+    }
+}
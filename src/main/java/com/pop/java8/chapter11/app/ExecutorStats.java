@@ -0,0 +1,55 @@
+package com.pop.java8.chapter11.app;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 11:08
+ *
+ * 执行器某一时刻的统计快照
+ */
+public class ExecutorStats {
+
+    private final int poolSize;//当前线程数
+    private final int active;//正在执行任务的线程数
+    private final int queued;//排队等待的任务数
+    private final long completed;//已经完成的任务数
+    private final long rejected;//被拒绝策略处理的任务数
+
+    public ExecutorStats(int poolSize, int active, int queued, long completed, long rejected) {
+        this.poolSize = poolSize;
+        this.active = active;
+        this.queued = queued;
+        this.completed = completed;
+        this.rejected = rejected;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorStats{" +
+                "poolSize=" + poolSize +
+                ", active=" + active +
+                ", queued=" + queued +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,133 @@
+package com.pop.java8.chapter11.app;
+
+import com.pop.java8.chapter11.Futures;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 18:30
+ *
+ * 对慢商店发送对冲请求（hedged request）。
+ *
+ * 商店的延迟是长尾分布的（CompletableEvent.randomDelay模拟的0.5秒到2.5秒）。
+ * 如果某家商店在它自己的p95延迟内还没有返回，就再发一个相同的请求，谁先返回用谁，
+ * 另一个取消掉。为了不让对冲本身把负载翻倍，对冲请求的数量被限制在总请求数的
+ * maxHedgeRatio以内，超过之后就只等原来的请求。
+ * getHedgeWins统计对冲请求比原请求先返回的次数，用来判断对冲是否真的有效。
+ *
+ * 对冲请求必须真正发给商店：如果原请求经过了带合并的缓存（CachingShop），
+ * 同样经过缓存的对冲请求只会等待同一次加载，白白占用一个线程，还会被算成对冲成功。
+ * 这种情况下用call的四参数版本，对冲请求直接调用缓存后面的商店。
+ * 同样，命中缓存的查询不应该交给Hedger：它们几乎不花时间，会把p95拉到接近0，
+ * 还会算进请求总数里放宽对冲的上限，见BootStrap.hedgedQuote。
+ *
+ * 失败的请求同样计入延迟统计，否则总是超时的商店看起来延迟很低，永远等不到对冲。
+ * 被取消的一方记录到取消时为止的耗时，它真正的延迟只会更长，不记录的话p95会偏低。
+ * 每次尝试都通过Futures.supplyInterruptibly执行，取消时会中断执行它的线程，
+ * 输掉的一方不会继续占着线程等完整个delay()。
+ */
+public class Hedger {
+
+    private final LatencyTracker latencies;
+    private final double maxHedgeRatio;
+
+    private final LongAdder requests = new LongAdder();
+    private final AtomicLong hedges = new AtomicLong();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * @param quantile      多久没有返回就发送对冲请求，比如0.95表示p95
+     * @param maxHedgeRatio 对冲请求占总请求数的上限，比如0.1
+     */
+    public Hedger(double quantile, double maxHedgeRatio) {
+        this.latencies = new LatencyTracker(quantile, 20);
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    public <T> CompletableFuture<T> call(String key, Supplier<T> task, Executor executor){
+        return call(key, task, task, executor);
+    }
+
+    /**
+     * @param primary 原请求
+     * @param hedge   对冲请求，结果必须与primary等价，但不能和primary共享同一次调用
+     */
+    public <T> CompletableFuture<T> call(String key, Supplier<T> primary, Supplier<T> hedge, Executor executor){
+        requests.increment();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<T> first = attempt(key, primary, executor, result, outstanding, false);
+        result.whenComplete((v, e) -> first.cancel(true));//谁先返回用谁，另一个不再需要
+
+        long delay = latencies.quantile(key);
+        if(delay > 0){
+            PriceExecutors.scheduler().schedule(() -> {
+                if(result.isDone() || !tryAcquireHedge()){
+                    return;
+                }
+                outstanding.incrementAndGet();
+                CompletableFuture<T> second = attempt(key, hedge, executor, result, outstanding, true);
+                result.whenComplete((v, e) -> second.cancel(true));
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> attempt(String key, Supplier<T> task, Executor executor,
+                                             CompletableFuture<T> result, AtomicInteger outstanding,
+                                             boolean hedge){
+        long start = System.nanoTime();
+        CompletableFuture<T> future = Futures.supplyInterruptibly(task::get, executor);
+        future.whenComplete((v, e) -> {
+            latencies.record(key, System.nanoTime() - start);
+            if(e == null){
+                if(result.complete(v) && hedge){
+                    hedgeWins.increment();
+                }
+            }else if(outstanding.decrementAndGet() == 0){
+                result.completeExceptionally(e);//所有尝试都失败了才算失败
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 对冲请求数不能超过总请求数的maxHedgeRatio
+     */
+    private boolean tryAcquireHedge(){
+        while (true){
+            long current = hedges.get();
+            if(current + 1 > maxHedgeRatio * requests.sum()){
+                return false;
+            }
+            if(hedges.compareAndSet(current, current + 1)){//检查和计数是一次原子操作，并发时不会超出上限
+                return true;
+            }
+        }
+    }
+
+    public long getRequests(){
+        return requests.sum();
+    }
+
+    public long getHedges(){
+        return hedges.get();
+    }
+
+    public long getHedgeWins(){
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Hedger{requests=" + getRequests() + ", hedges=" + getHedges()
+                + ", hedgeWins=" + getHedgeWins() + '}';
+    }
+}
@@ -0,0 +1,48 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 10:20
+ *
+ * 包装PriceExecutor，记录任务从提交到开始执行的排队时间，
+ * 以及正在排队、正在执行的任务数（executor.queued / executor.running）
+ */
+public class InstrumentedExecutor implements PriceExecutor {
+
+    private final PriceExecutor delegate;
+    private final AtomicLong queued = PipelineMetrics.gauge("executor.queued");
+    private final AtomicLong running = PipelineMetrics.gauge("executor.running");
+
+    public InstrumentedExecutor(PriceExecutor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                running.incrementAndGet();
+                PipelineMetrics.record(PipelineMetrics.EXECUTOR_QUEUE, System.nanoTime() - submitted);
+                try {
+                    command.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return delegate.getStats();
+    }
+}
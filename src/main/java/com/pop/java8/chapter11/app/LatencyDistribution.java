@@ -0,0 +1,48 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Random;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 11:00
+ *
+ * 模拟商店响应时间的分布，单位毫秒。
+ * 采样使用调用方传入的Random，只要种子相同，得到的延迟序列就相同。
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    long sample(Random random);
+
+    /**
+     * 固定延迟，与Shop.delay()相同
+     */
+    static LatencyDistribution constant(long millis){
+        return random -> millis;
+    }
+
+    /**
+     * [min, max]之间均匀分布，CompletableEvent.randomDelay就是uniform(500, 2500)
+     */
+    static LatencyDistribution uniform(long min, long max){
+        if(max < min){
+            throw new IllegalArgumentException("max < min");
+        }
+        return random -> min + (long) (random.nextDouble() * (max - min + 1));
+    }
+
+    /**
+     * 对数正态分布，用中位数和对数的标准差描述，sigma越大长尾越明显
+     */
+    static LatencyDistribution logNormal(double medianMillis, double sigma){
+        double mu = Math.log(medianMillis);
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * 以slowRatio的概率从slow中采样，否则从fast中采样，模拟偶尔卡顿的服务
+     */
+    static LatencyDistribution bimodal(LatencyDistribution fast, LatencyDistribution slow, double slowRatio){
+        return random -> random.nextDouble() < slowRatio ? slow.sample(random) : fast.sample(random);
+    }
+}
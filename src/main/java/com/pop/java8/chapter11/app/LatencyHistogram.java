@@ -0,0 +1,136 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 09:30
+ *
+ * HDR风格的延迟直方图（单位纳秒），线程安全，记录时不加锁。
+ *
+ * 0~63直接一一对应一个桶；更大的值按2的幂分段，每段再线性切成32个桶，
+ * 所以任意值的相对误差都在1/32（约3%）以内，而桶的总数是固定的，
+ * 能覆盖从1纳秒到long最大值的全部范围。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;//每个2的幂分段中的桶数
+    private static final int LINEAR = SUB_COUNT << 1;//0~63直接作为下标
+    private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos){
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    static int index(long value){
+        if(value < LINEAR){
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);//最高位的位置，>= SUB_BITS+1
+        int shift = magnitude - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_COUNT;//去掉最高位之后的SUB_BITS位
+        return LINEAR + (magnitude - (SUB_BITS + 1)) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 下标对应桶的中间值
+     */
+    static long valueOf(int index){
+        if(index < LINEAR){
+            return index;
+        }
+        int magnitude = (index - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+        long sub = (index - LINEAR) % SUB_COUNT + SUB_COUNT;
+        int shift = magnitude - SUB_BITS;
+        return (sub << shift) + (1L << (shift - 1));
+    }
+
+    public HistogramSnapshot snapshot(){
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new HistogramSnapshot(copy, total, sum.sum(),
+                total == 0 ? 0 : min.get(), max.get());
+    }
+
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**
+     * 某一时刻的直方图副本，计算分位数不会影响正在记录的线程
+     */
+    public static class HistogramSnapshot{
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        HistogramSnapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean(){
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * 分位数，quantile取0~1，比如0.99
+         */
+        public long percentile(double quantile){
+            if(count == 0){
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= rank){
+                    return Math.max(min, Math.min(max, valueOf(i)));
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d min=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                    count, min / 1e6, percentile(0.5) / 1e6, percentile(0.9) / 1e6,
+                    percentile(0.99) / 1e6, max / 1e6);
+        }
+    }
+}
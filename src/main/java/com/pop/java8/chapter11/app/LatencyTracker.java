@@ -0,0 +1,63 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 18:10
+ *
+ * 按商店记录最近的响应时间，用来估算某个分位数（比如p95）。
+ * 每家商店保存最近WINDOW次的延迟样本，分位数每隔一段样本才重新排序计算一次。
+ */
+public class LatencyTracker {
+
+    private static final int WINDOW = 256;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final double quantile;
+    private final int minSamples;
+    private final ConcurrentHashMap<String,Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param quantile   要估算的分位数，比如0.95
+     * @param minSamples 样本数不足时认为还不知道分位数
+     */
+    public LatencyTracker(double quantile, int minSamples) {
+        this.quantile = quantile;
+        this.minSamples = minSamples;
+    }
+
+    public void record(String key, long nanos){
+        windows.computeIfAbsent(key, k -> new Window()).add(nanos);
+    }
+
+    /**
+     * 指定商店延迟的分位数（纳秒），样本不足时返回-1
+     */
+    public long quantile(String key){
+        Window window = windows.get(key);
+        return window == null ? -1 : window.quantile();
+    }
+
+    private class Window{
+        private final long[] samples = new long[WINDOW];
+        private int count;//累计写入的样本数
+        private long cached = -1;
+
+        synchronized void add(long nanos){
+            samples[count % WINDOW] = nanos;
+            count++;
+            if(count >= minSamples && (cached < 0 || count % RECOMPUTE_EVERY == 0)){
+                int size = Math.min(count, WINDOW);
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                cached = sorted[Math.min(size - 1, (int) Math.ceil(quantile * size) - 1)];
+            }
+        }
+
+        synchronized long quantile(){
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 11:40
+ *
+ * 按目标QPS驱动价格查询的压测工具。
+ *
+ * 采用开环的方式发送请求：不管之前的请求有没有返回，都按固定的间隔发出下一个，
+ * 这样系统变慢时排队的时间也会体现在延迟里，不会被“少发请求”掩盖（coordinated omission）。
+ * 每个请求的延迟从计划发送的时间开始计算，结果汇总为吞吐量和延迟分位数。
+ *
+ * 用法：java LoadGenerator [stream|bootstrap] [qps] [秒数] [商店数] [种子]
+ */
+public class LoadGenerator {
+
+    private final double qps;
+    private final long durationMillis;
+
+    public LoadGenerator(double qps, long duration, TimeUnit unit) {
+        this.qps = qps;
+        this.durationMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * 在持续时间内按QPS调用request，等所有请求结束后返回结果
+     */
+    public Result run(Supplier<CompletableFuture<?>> request){
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / qps);
+        long total = (long) (qps * durationMillis / 1000);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[(int) total];
+        long start = System.nanoTime();
+
+        for (int i = 0; i < total; i++) {
+            long intended = start + i * period;//计划发送的时间
+            long wait = intended - System.nanoTime();
+            if(wait > 0){
+                LockSupport.parkNanos(wait);
+            }
+            CompletableFuture<?> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                future = failed(e);
+            }
+            futures[i] = future.whenComplete((v, e) -> {
+                histogram.record(System.nanoTime() - intended);
+                (e == null ? succeeded : failed).incrementAndGet();
+            });
+        }
+        CompletableFuture.allOf(futures).handle((v, e) -> null).join();
+        long elapsed = System.nanoTime() - start;
+        return new Result(total, succeeded.get(), failed.get(), elapsed, histogram.snapshot());
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    public static class Result{
+        private final long issued;
+        private final long succeeded;
+        private final long failed;
+        private final long elapsedNanos;
+        private final LatencyHistogram.HistogramSnapshot latency;
+
+        Result(long issued, long succeeded, long failed, long elapsedNanos,
+               LatencyHistogram.HistogramSnapshot latency) {
+            this.issued = issued;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public double getThroughput(){
+            return succeeded * 1e9 / elapsedNanos;
+        }
+
+        public LatencyHistogram.HistogramSnapshot getLatency() {
+            return latency;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("issued=%d ok=%d failed=%d throughput=%.1f req/s latency: %s",
+                    issued, succeeded, failed, getThroughput(), latency);
+        }
+    }
+
+    public static void main(String[] args) {
+        String target = args.length > 0 ? args[0] : "stream";
+        double qps = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        int shopCount = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        //长尾的商店延迟：大部分在100毫秒左右，5%的请求在1秒左右，另有1%的失败
+        List<Shop> shops = SimulatedShop.create(shopCount,
+                LatencyDistribution.bimodal(LatencyDistribution.logNormal(100, 0.3),
+                        LatencyDistribution.uniform(800, 1200), 0.05),
+                0.01, seed);
+        LoadGenerator generator = new LoadGenerator(qps, seconds, TimeUnit.SECONDS);
+        Result result;
+        switch (target){
+            case "stream":
+                result = generator.run(() -> CompletableFuture.allOf(
+                        CompletableEvent.findPricesStream(shops, "myPhone27S", BootStrap.executor)
+                                .toArray(CompletableFuture[]::new)));
+                break;
+            case "bootstrap":
+                //findPricesAys背后的流水线（不经过single-flight合并），直接传入模拟商店，不改动BootStrap.shops
+                BootStrap bootStrap = new BootStrap();
+                result = generator.run(() -> bootStrap.findPricesFuture(shops, "myPhone27S", BootStrap.executor));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown target: " + target);
+        }
+        System.out.println(target + " qps=" + qps + " shops=" + shopCount + " seed=" + seed);
+        System.out.println(result);
+        System.out.println(BootStrap.executor.getStats());
+    }
+}
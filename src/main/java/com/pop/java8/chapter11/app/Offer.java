@@ -0,0 +1,31 @@
+package com.pop.java8.chapter11.app;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 17:20
+ *
+ * 某家商店应用折扣之后的最终价格
+ */
+public class Offer {
+
+    private final String shopName;
+    private final double price;
+
+    public Offer(String shopName, double price) {
+        this.shopName = shopName;
+        this.price = price;
+    }
+
+    public String getShopName() {
+        return shopName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    @Override
+    public String toString() {
+        return shopName + " price is " + price;
+    }
+}
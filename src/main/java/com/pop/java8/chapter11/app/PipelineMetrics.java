@@ -0,0 +1,139 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 10:00
+ *
+ * 价格查询流水线的指标。
+ *
+ * 原来只能在demo里用System.nanoTime()打印总耗时，看不出变慢的是商店还是折扣服务。
+ * 这里为流水线的每个阶段记录延迟直方图：
+ *  shop.fetch       向商店查询价格，另外按商店记录一份 shop.fetch{shop=名称}
+ *  quote.parse      解析报价
+ *  discount.apply   调用折扣服务
+ *  executor.queue   任务在执行器队列里等待的时间（见InstrumentedExecutor）
+ * 以及执行器的排队数和运行数。
+ * 本地的指标采集程序通过snapshot()或者scrape()主动拉取。
+ */
+public final class PipelineMetrics {
+
+    public static final String SHOP_FETCH = "shop.fetch";
+    public static final String QUOTE_PARSE = "quote.parse";
+    public static final String DISCOUNT_APPLY = "discount.apply";
+    public static final String EXECUTOR_QUEUE = "executor.queue";
+
+    private static final ConcurrentHashMap<String,LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String,AtomicLong> gauges = new ConcurrentHashMap<>();
+    //stage -> 商店名称 -> stage{shop=名称}的直方图，热路径上不用每次拼接名称
+    private static final ConcurrentHashMap<String,ConcurrentHashMap<String,LatencyHistogram>> shopHistograms = new ConcurrentHashMap<>();
+
+    private PipelineMetrics() {
+    }
+
+    public static LatencyHistogram histogram(String name){
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * stage{shop=名称}的直方图，名称只在第一次用到时拼接
+     */
+    public static LatencyHistogram histogram(String stage, String shop){
+        ConcurrentHashMap<String,LatencyHistogram> byShop = shopHistograms.get(stage);
+        if(byShop == null){
+            byShop = shopHistograms.computeIfAbsent(stage, s -> new ConcurrentHashMap<>());
+        }
+        LatencyHistogram histogram = byShop.get(shop);
+        if(histogram == null){
+            histogram = byShop.computeIfAbsent(shop, s -> histogram(stage + "{shop=" + s + "}"));
+        }
+        return histogram;
+    }
+
+    /**
+     * 计数器一经创建就不会被替换，调用方可以保存返回的引用（例如InstrumentedExecutor）
+     */
+    public static AtomicLong gauge(String name){
+        return gauges.computeIfAbsent(name, n -> new AtomicLong());
+    }
+
+    public static void record(String name, long nanos){
+        histogram(name).record(nanos);
+    }
+
+    /**
+     * 执行task并把耗时记入stage的直方图（失败的调用也会记录）
+     */
+    public static <T> T time(String stage, Supplier<T> task){
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 同时记入stage和按商店区分的stage{shop=名称}
+     */
+    public static <T> T time(String stage, String shop, Supplier<T> task){
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            record(stage, elapsed);
+            histogram(stage, shop).record(elapsed);
+        }
+    }
+
+    /**
+     * 所有直方图的快照，按名称排序
+     */
+    public static Map<String,LatencyHistogram.HistogramSnapshot> snapshot(){
+        Map<String,LatencyHistogram.HistogramSnapshot> result = new TreeMap<>();
+        histograms.forEach((name, histogram) -> result.put(name, histogram.snapshot()));
+        return result;
+    }
+
+    public static Map<String,Long> gauges(){
+        Map<String,Long> result = new TreeMap<>();
+        gauges.forEach((name, gauge) -> result.put(name, gauge.get()));
+        return result;
+    }
+
+    /**
+     * 文本格式的全部指标，每行一个值，单位纳秒：
+     *  shop.fetch_count 4
+     *  shop.fetch{quantile="0.99"} 1003000000
+     */
+    public static String scrape(){
+        StringBuilder sb = new StringBuilder();
+        snapshot().forEach((name, s) -> {
+            sb.append(name).append("_count ").append(s.getCount()).append('\n');
+            sb.append(name).append("_max ").append(s.getMax()).append('\n');
+            for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                        .append(s.percentile(q)).append('\n');
+            }
+        });
+        gauges().forEach((name, value) -> sb.append(name).append(' ').append(value).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * 清空直方图，计数器原地归零而不是移除：InstrumentedExecutor持有计数器的引用，
+     * 移除之后它仍然更新旧的对象，新的计数器永远是0。
+     * queued/running是当前值，应当在执行器空闲时调用，否则正在执行的任务结束后会减成负数
+     */
+    public static void reset(){
+        shopHistograms.clear();
+        histograms.clear();
+        gauges.values().forEach(gauge -> gauge.set(0));
+    }
+}
@@ -0,0 +1,244 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 15:00
+ *
+ * 带过期时间和容量上限的并发缓存。
+ *
+ *  过期：每个条目在加载完成ttl之后失效，下一次访问会重新加载
+ *  容量：条目超过maxSize时，按LRU（最久未访问）或LFU（访问次数最少）淘汰一个
+ *  合并：同一个key的并发加载只会触发一次loader，其余调用方等待同一个Future，
+ *   避免缓存失效的瞬间所有请求一起打到商店上（缓存击穿）。
+ *   这些等待者既没有命中已有的值，也没有自己加载，单独计入coalesced，不算作命中
+ *
+ * 淘汰时会扫描全部条目找出最合适的那个，代价是O(n)，
+ * 对商店数量*商品数量这个级别的缓存来说足够了。
+ */
+public class PriceCache<K,V> {
+
+    public enum Eviction{ LRU, LFU }
+
+    private final ConcurrentHashMap<K,Node<V>> map = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Eviction eviction;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PriceCache(long ttl, TimeUnit unit, int maxSize, Eviction eviction) {
+        if(maxSize < 1){
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+        this.eviction = eviction;
+    }
+
+    /**
+     * 命中时直接返回缓存的值，否则在当前线程调用loader加载。
+     * loader抛出的异常会原样传给所有等待这次加载的调用方，并且不会被缓存。
+     */
+    public V get(K key, Function<? super K, ? extends V> loader){
+        while (true){
+            long now = System.nanoTime();
+            Node<V> node = map.get(key);
+            if(node != null){
+                if(!node.isExpired(now)){
+                    if(node.value.isDone()){
+                        hits.increment();
+                    }else{
+                        coalesced.increment();
+                    }
+                    node.touch(now);
+                    return join(node.value);
+                }
+                map.remove(key, node);//过期了，让下一个put进来的Node重新加载
+                continue;
+            }
+            Node<V> created = new Node<>(now);
+            node = map.putIfAbsent(key, created);
+            if(node != null){
+                continue;//别的线程先一步开始加载，回到循环开头等它的结果
+            }
+            misses.increment();
+            if(map.size() > maxSize){
+                evict(key);
+            }
+            return load(key, created, loader);
+        }
+    }
+
+    /**
+     * 只返回已经加载完成并且没有过期的值，否则返回null，不会等待正在进行的加载。
+     * 返回null时不计入未命中，调用方随后的get会计入
+     */
+    public V getIfPresent(K key){
+        long now = System.nanoTime();
+        Node<V> node = map.get(key);
+        if(node == null || !node.value.isDone() || node.isExpired(now) || node.value.isCompletedExceptionally()){
+            return null;
+        }
+        hits.increment();
+        node.touch(now);
+        return node.value.join();
+    }
+
+    private V load(K key, Node<V> node, Function<? super K, ? extends V> loader){
+        try {
+            V value = loader.apply(key);
+            node.expiresAt = System.nanoTime() + ttlNanos;
+            node.value.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            map.remove(key, node);
+            node.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future){
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            //把加载线程抛出的原始异常交给调用方
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * 先清掉过期的条目，仍然超出容量时按淘汰策略移除一个（不会移除正在加载的key）
+     */
+    private void evict(K loading){
+        long now = System.nanoTime();
+        K victim = null;
+        Node<V> victimNode = null;
+        for (Map.Entry<K,Node<V>> entry : map.entrySet()) {
+            Node<V> node = entry.getValue();
+            if(entry.getKey().equals(loading) || !node.value.isDone()){
+                continue;
+            }
+            if(node.isExpired(now)){
+                if(map.remove(entry.getKey(), node)) evictions.increment();
+                continue;
+            }
+            if(victimNode == null || colder(node, victimNode)){
+                victim = entry.getKey();
+                victimNode = node;
+            }
+        }
+        if(map.size() > maxSize && victim != null && map.remove(victim, victimNode)){
+            evictions.increment();
+        }
+    }
+
+    private boolean colder(Node<V> a, Node<V> b){
+        if(eviction == Eviction.LFU){
+            long fa = a.frequency.sum(), fb = b.frequency.sum();
+            if(fa != fb) return fa < fb;
+        }
+        return a.lastAccess < b.lastAccess;
+    }
+
+    /**
+     * 直接放入一个已知的值，例如重启后从QuoteLog回放的报价。
+     * age是这个值已经存在的时间，剩余的有效期相应缩短，已经过期的值不会放入
+     */
+    public void put(K key, V value, long age, TimeUnit unit){
+        put(key, value, ttlNanos, unit.toNanos(age));
+    }
+
+    /**
+     * 同上，但有效期按ttl而不是缓存自己的过期时间计算
+     */
+    public void put(K key, V value, long ttl, long age, TimeUnit unit){
+        put(key, value, unit.toNanos(ttl), unit.toNanos(age));
+    }
+
+    private void put(K key, V value, long ttlNanos, long ageNanos){
+        long remaining = ttlNanos - Math.max(0, ageNanos);
+        if(remaining <= 0){
+            return;
+        }
+        long now = System.nanoTime();
+        Node<V> node = new Node<>(now);
+        node.expiresAt = now + remaining;
+        node.value.complete(value);
+        map.put(key, node);
+        if(map.size() > maxSize){
+            evict(key);
+        }
+    }
+
+    public void invalidate(K key){
+        map.remove(key);
+    }
+
+    public void clear(){
+        map.clear();
+    }
+
+    public int size(){
+        return map.size();
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * 等待别的调用方正在进行的加载的次数
+     */
+    public long getCoalesced(){
+        return coalesced.sum();
+    }
+
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PriceCache{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", coalesced=" + getCoalesced() + ", evictions=" + getEvictions()
+                + ", eviction=" + eviction + '}';
+    }
+
+    private static class Node<V>{
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private final LongAdder frequency = new LongAdder();
+        private volatile long lastAccess;
+        private volatile long expiresAt;
+
+        Node(long now) {
+            this.lastAccess = now;
+        }
+
+        boolean isExpired(long now){
+            return value.isDone() && now - expiresAt >= 0;//加载完成之前不会过期
+        }
+
+        void touch(long now){
+            lastAccess = now;
+            frequency.increment();
+        }
+    }
+}
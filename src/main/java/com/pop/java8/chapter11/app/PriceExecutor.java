@@ -0,0 +1,16 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.Executor;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 11:05
+ *
+ * 最佳价格查询器使用的执行器。
+ * 除了执行任务之外，还需要能够导出运行时的统计数据，方便观察线程池是否已经饱和。
+ * 具体使用哪一种实现由PriceExecutors决定。
+ */
+public interface PriceExecutor extends Executor {
+
+    ExecutorStats getStats();
+}
@@ -0,0 +1,136 @@
+package com.pop.java8.chapter11.app;
+
+import com.pop.java8.chapter11.Futures;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 11:40
+ *
+ * 价格查询执行器的工厂。
+ * 通过系统属性price.executor选择实现，例如 -Dprice.executor=fixed
+ *  adaptive 根据商店延迟和内核数自动调整线程数（默认）
+ *  fixed    与原来一样的固定线程池，线程数为min(商店数量,100)
+ *  virtual  每个任务一个虚拟线程，需要JDK 21+，Java 8上回退到adaptive
+ */
+public final class PriceExecutors {
+
+    public static final String PROPERTY = "price.executor";
+
+    /**
+     * 原来的阈值，最多分配100个线程，防止崩溃
+     */
+    static final int MAX_THREADS = 100;
+    static final int QUEUE_CAPACITY = 10_000;
+
+    /**
+     * 定时任务触发的工作在这里执行。线程按需创建，任务从不在提交它的线程上执行
+     */
+    private static final Executor dispatcher = Executors.newCachedThreadPool(daemonThreadFactory("price-dispatch"));
+
+    private PriceExecutors() {
+    }
+
+    /**
+     * 定时触发（超时、批次窗口等）共用Futures的调度线程
+     */
+    static ScheduledExecutorService scheduler(){
+        return Futures.scheduler();
+    }
+
+    /**
+     * 调度线程只有一个，所有的超时和对冲计时都靠它。定时任务如果直接把工作交给
+     * CallerRunsPolicy的执行器，执行器满了之后1秒的远程调用就会在调度线程上运行，
+     * 拖慢整个进程的定时。所以定时任务只负责触发，把工作交给这个执行器
+     */
+    static Executor dispatcher(){
+        return dispatcher;
+    }
+
+    /**
+     * 按系统属性创建执行器，外面包一层InstrumentedExecutor记录排队时间
+     */
+    public static PriceExecutor create(int shopCount){
+        return new InstrumentedExecutor(select(shopCount));
+    }
+
+    private static PriceExecutor select(int shopCount){
+        String mode = System.getProperty(PROPERTY, "adaptive");
+        switch (mode){
+            case "adaptive":
+                return adaptive(shopCount);
+            case "fixed":
+                return fixed(Math.max(1, Math.min(shopCount, MAX_THREADS)));
+            case "virtual":
+                return virtualOrElse(shopCount);
+            default:
+                throw new IllegalArgumentException("unknown " + PROPERTY + ": " + mode);
+        }
+    }
+
+    /**
+     * 先按商店数量起步，之后按观察到的等待/计算比率在内核数和MAX_THREADS之间调整。
+     * 队列满了之后由提交任务的线程自己执行，形成背压，而不是让队列无限增长。
+     */
+    public static PriceExecutor adaptive(int shopCount){
+        return adaptive(shopCount, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 指定队列满了之后的拒绝策略，例如不能占用调用线程的地方用AbortPolicy
+     */
+    public static PriceExecutor adaptive(int shopCount, RejectedExecutionHandler handler){
+        int min = Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS);
+        int initial = Math.max(min, Math.min(shopCount, MAX_THREADS));
+        return new AdaptivePriceExecutor(min, initial, MAX_THREADS, QUEUE_CAPACITY, 1.0, handler);
+    }
+
+    /**
+     * min和max相同，线程数不会再调整
+     */
+    public static PriceExecutor fixed(int threads){
+        return new AdaptivePriceExecutor(threads, threads, threads, QUEUE_CAPACITY,
+                1.0, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 运行时支持虚拟线程时使用thread-per-task执行器，否则回退到原来的线程池
+     */
+    public static PriceExecutor virtualOrElse(int shopCount){
+        PriceExecutor executor = VirtualThreadPriceExecutor.createIfSupported();
+        if(executor == null){
+            System.err.println("virtual threads are not supported on Java "
+                    + System.getProperty("java.specification.version") + ", falling back to adaptive pool");
+            return adaptive(shopCount);
+        }
+        return executor;
+    }
+
+    /**
+     * 交互查询和后台任务分开排队的执行器：交互查询权重为4，可以用满所有线程；
+     * 后台任务权重为1，最多占用一半的线程
+     */
+    public static PriorityPriceExecutor priority(int shopCount){
+        int threads = Math.max(Runtime.getRuntime().availableProcessors(), Math.min(shopCount, MAX_THREADS));
+        Map<PriorityPriceExecutor.Priority, Integer> weights = new EnumMap<>(PriorityPriceExecutor.Priority.class);
+        Map<PriorityPriceExecutor.Priority, Integer> limits = new EnumMap<>(PriorityPriceExecutor.Priority.class);
+        weights.put(PriorityPriceExecutor.Priority.INTERACTIVE, 4);
+        limits.put(PriorityPriceExecutor.Priority.INTERACTIVE, threads);
+        weights.put(PriorityPriceExecutor.Priority.BACKGROUND, 1);
+        limits.put(PriorityPriceExecutor.Priority.BACKGROUND, Math.max(1, threads / 2));
+        return new PriorityPriceExecutor(threads, weights, limits, QUEUE_CAPACITY,
+                daemonThreadFactory("price-priority"));
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix){
+        return Futures.daemonThreadFactory(prefix);
+    }
+}
@@ -0,0 +1,126 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 21:00
+ *
+ * 商品 × 商店的报价矩阵，BootStrap.findPricesBulk的结果。
+ * 每家商店返回之后填充对应的一列。出错的商店那一列保持为空，和PriceReport一样，
+ * 商店名称和导致失败的异常记录在failed中，调用方可以区分“出错”和“还没有返回”。
+ * 行和列按名字索引，所以商品和商店的名字都不能重复。
+ */
+public class PriceMatrix {
+
+    private final List<String> products;
+    private final List<String> shops;
+    private final Map<String,Integer> productIndex = new LinkedHashMap<>();
+    private final Map<String,Integer> shopIndex = new LinkedHashMap<>();
+    private final Quote[][] cells;//[商品][商店]
+    private final Map<String,Throwable> failed = new LinkedHashMap<>();
+
+    public PriceMatrix(List<String> products, List<String> shops) {
+        this.products = Collections.unmodifiableList(new ArrayList<>(products));
+        this.shops = Collections.unmodifiableList(new ArrayList<>(shops));
+        index(products, productIndex, "product");
+        index(shops, shopIndex, "shop");
+        this.cells = new Quote[products.size()][shops.size()];
+    }
+
+    private static void index(List<String> names, Map<String,Integer> index, String kind){
+        for (int i = 0; i < names.size(); i++) {
+            if(index.put(names.get(i), i) != null){
+                throw new IllegalArgumentException("duplicate " + kind + ": " + names.get(i));
+            }
+        }
+    }
+
+    /**
+     * 填充某家商店的一列，quotes与products一一对应
+     */
+    synchronized void fill(String shop, List<Quote> quotes){
+        int column = shopIndex.get(shop);
+        for (int row = 0; row < quotes.size(); row++) {
+            cells[row][column] = quotes.get(row);
+        }
+    }
+
+    /**
+     * 记录某家商店的查询失败，它那一列保持为空
+     */
+    synchronized void fail(String shop, Throwable cause){
+        failed.put(shop, cause);
+    }
+
+    public List<String> getProducts() {
+        return products;
+    }
+
+    public List<String> getShops() {
+        return shops;
+    }
+
+    /**
+     * 返回异常的商店名称，以及导致失败的异常
+     */
+    public synchronized Map<String,Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+
+    /**
+     * 所有商店都返回了报价
+     */
+    public synchronized boolean isComplete(){
+        return failed.isEmpty();
+    }
+
+    /**
+     * 某家商店某个商品的报价，商店没有返回时为null
+     */
+    public synchronized Quote get(String product, String shop){
+        Integer row = productIndex.get(product);
+        Integer column = shopIndex.get(shop);
+        return row == null || column == null ? null : cells[row][column];
+    }
+
+    /**
+     * 某个商品在各家商店的报价，按商店顺序排列，跳过没有返回的商店
+     */
+    public synchronized Map<String,Quote> row(String product){
+        Map<String,Quote> row = new LinkedHashMap<>();
+        Integer index = productIndex.get(product);
+        if(index != null){
+            for (int column = 0; column < shops.size(); column++) {
+                Quote quote = cells[index][column];
+                if(quote != null) row.put(shops.get(column), quote);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 某个商品的最低原始价格
+     */
+    public Optional<Quote> best(String product){
+        return row(product).values().stream()
+                .min((a, b) -> Double.compare(a.getPrice(), b.getPrice()));
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String product : products) {
+            sb.append(product).append(" -> ");
+            row(product).forEach((shop, quote) -> sb.append(shop).append('=').append(quote.getPrice()).append(' '));
+            sb.append('\n');
+        }
+        if(!failed.isEmpty()) sb.append("failed=").append(failed.keySet()).append('\n');
+        return sb.toString();
+    }
+}
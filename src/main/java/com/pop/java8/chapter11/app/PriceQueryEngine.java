@@ -0,0 +1,89 @@
+package com.pop.java8.chapter11.app;
+
+import com.pop.java8.chapter11.Futures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 10:20
+ *
+ * 带截止时间的价格查询引擎。
+ *
+ * BootStrap中的findPricesAys对每个Future调用join，只要有一家商店响应缓慢，
+ * 整个结果就会被它拖住。这里对每家商店的Future单独设置一个截止时间，到点还没有
+ * 返回的商店直接记为超时，整体返回一个CompletableFuture<PriceReport>，调用方
+ * 不需要阻塞，也不会被最慢的商店拖累。
+ */
+public class PriceQueryEngine {
+
+    private final List<Shop> shops;
+    private final Executor executor;
+    private final long timeout;
+    private final TimeUnit unit;
+
+    public PriceQueryEngine(List<Shop> shops, Executor executor, long timeout, TimeUnit unit) {
+        this.shops = shops;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.unit = unit;
+    }
+
+    /**
+     * 查询所有商店的报价，返回的Future最晚在截止时间之后完成
+     */
+    public CompletableFuture<PriceReport> query(String product){
+        List<CompletableFuture<Outcome>> outcomes = shops.stream()
+                .map(shop -> query(shop, product))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> report(product, outcomes));
+    }
+
+    private CompletableFuture<Outcome> query(Shop shop, String product){
+        CompletableFuture<Quote> quote =
+                ShopGuard.of(shop).supplyAsync(() -> shop.getPriceEnum(product), executor)
+                        .thenApply(Quote::parse);
+        //无论成功、失败还是超时，都转换成Outcome，保证allOf不会因为某家商店而异常结束
+        return Futures.within(quote, timeout, unit)
+                .handle((q, e) -> new Outcome(shop.getName(), q, unwrap(e)));
+    }
+
+    private static Throwable unwrap(Throwable e){
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static PriceReport report(String product, List<CompletableFuture<Outcome>> outcomes){
+        List<Quote> quotes = new ArrayList<>();
+        List<String> timedOut = new ArrayList<>();
+        Map<String,Throwable> failed = new LinkedHashMap<>();
+        for (CompletableFuture<Outcome> future : outcomes) {
+            Outcome outcome = future.join();//allOf之后都已经完成，这里不会阻塞
+            if(outcome.error == null){
+                quotes.add(outcome.quote);
+            }else if(outcome.error instanceof TimeoutException){
+                timedOut.add(outcome.shopName);
+            }else{
+                failed.put(outcome.shopName, outcome.error);
+            }
+        }
+        return new PriceReport(product, quotes, timedOut, failed);
+    }
+
+    private static class Outcome{
+        private final String shopName;
+        private final Quote quote;
+        private final Throwable error;
+
+        Outcome(String shopName, Quote quote, Throwable error) {
+            this.shopName = shopName;
+            this.quote = quote;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 17:30
+ *
+ * 响应式地消费各家商店的报价，并且可以提前结束。
+ *
+ * CompletableEvent.findPricesStream只能在每个价格返回时打印出来，main还要用allOf
+ * 等待所有商店。很多场景下只要拿到第一个价格、前k个价格，或者一个“足够好”的价格就够了，
+ * 这时剩下的商店查询和折扣服务调用都是浪费。PriceRace提供了这几种语义，并在提前结束时
+ * 取消还没有完成的Future：尚未开始执行的商店任务不会再执行，已经拿到报价但还没有申请
+ * 折扣的商店也不会再调用折扣服务。（CompletableFuture的cancel不会中断已经在执行的任务。）
+ */
+public class PriceRace {
+
+    private final List<CompletableFuture<?>> stages = new ArrayList<>();
+    private final List<CompletableFuture<Offer>> offers = new ArrayList<>();
+    private final CompletableFuture<Void> done;
+    private final AtomicReference<Offer> best = new AtomicReference<>();
+    private final List<Consumer<Offer>> listeners = new ArrayList<>();
+    //更新最低价和回调监听器都在这把锁里，监听器看到的价格严格递减，注册时也不会重复收到同一个报价
+    private final Object lock = new Object();
+    private volatile boolean cancelled;
+
+    public PriceRace(List<Shop> shops, String product, Executor executor) {
+        for (Shop shop : shops) {
+            CompletableFuture<String> raw =
+                    CompletableFuture.supplyAsync(() -> shop.getPriceEnum(product), executor);
+            CompletableFuture<Offer> offer = raw
+                    .thenApply(Quote::parse)
+                    .thenCompose(quote -> cancelled
+                            ? failed(new CancellationException())//已经结束，不再申请折扣
+                            : CompletableFuture.supplyAsync(
+                                    () -> new Offer(quote.getShopName(), Discount.discountedPrice(quote)), executor));
+            offer.thenAccept(this::offer);
+            stages.add(raw);
+            stages.add(offer);
+            offers.add(offer);
+        }
+        //不管成功失败，所有商店都结束之后完成
+        done = CompletableFuture.allOf(offers.stream()
+                .map(f -> f.handle((o, e) -> null))
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private void offer(Offer offer){
+        synchronized (lock){
+            Offer current = best.get();
+            if(current != null && current.getPrice() <= offer.getPrice()){
+                return;
+            }
+            best.set(offer);
+            for (Consumer<Offer> listener : listeners) {
+                listener.accept(offer);
+            }
+        }
+    }
+
+    /**
+     * 每当出现更低的价格时回调，注册时如果已经有最低价，会立刻回调一次。
+     * 回调在锁内按顺序执行，监听器应当很快返回
+     */
+    public PriceRace onBestSoFar(Consumer<Offer> listener){
+        synchronized (lock){
+            listeners.add(listener);
+            Offer current = best.get();
+            if(current != null){
+                listener.accept(current);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 到目前为止的最低价
+     */
+    public Optional<Offer> bestSoFar(){
+        return Optional.ofNullable(best.get());
+    }
+
+    /**
+     * 类似anyOf，但忽略失败的商店：第一个成功返回的价格，之后取消其余的查询
+     */
+    public CompletableFuture<Offer> first(){
+        return firstK(1).thenApply(list -> {
+            if(list.isEmpty()){
+                throw new IllegalStateException("no shop returned a price");
+            }
+            return list.get(0);
+        });
+    }
+
+    /**
+     * 最先返回的k个价格，按返回的先后排列。凑够k个之后取消其余的查询；
+     * 所有商店都结束了仍然不够k个时，返回已经拿到的价格
+     */
+    public CompletableFuture<List<Offer>> firstK(int k){
+        if(k < 1){
+            throw new IllegalArgumentException("k must be at least 1: " + k);
+        }
+        CompletableFuture<List<Offer>> result = new CompletableFuture<>();
+        List<Offer> collected = new ArrayList<>();
+        AtomicInteger count = new AtomicInteger();
+        for (CompletableFuture<Offer> offer : offers) {
+            offer.thenAccept(o -> {
+                if(count.incrementAndGet() > k){
+                    return;
+                }
+                List<Offer> snapshot = null;
+                synchronized (collected){
+                    collected.add(o);
+                    if(collected.size() == k){
+                        snapshot = new ArrayList<>(collected);
+                    }
+                }
+                if(snapshot != null && result.complete(snapshot)){
+                    cancel();
+                }
+            });
+        }
+        done.thenRun(() -> {
+            synchronized (collected){
+                result.complete(new ArrayList<>(collected));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 一旦出现不高于goodEnough的价格就立刻返回并取消其余的查询；
+     * 否则等所有商店结束后返回最低价
+     */
+    public CompletableFuture<Offer> firstAtMost(double goodEnough){
+        CompletableFuture<Offer> result = new CompletableFuture<>();
+        onBestSoFar(offer -> {
+            if(offer.getPrice() <= goodEnough && result.complete(offer)){
+                cancel();
+            }
+        });
+        done.thenRun(() -> {
+            Offer current = best.get();
+            if(current != null){
+                result.complete(current);
+            }else{
+                result.completeExceptionally(new IllegalStateException("no shop returned a price"));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 所有商店都结束（或被取消）之后的最低价
+     */
+    public CompletableFuture<Optional<Offer>> best(){
+        return done.thenApply(v -> bestSoFar());
+    }
+
+    /**
+     * 取消所有尚未完成的查询
+     */
+    public void cancel(){
+        cancelled = true;
+        for (CompletableFuture<?> stage : stages) {
+            stage.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 10:12
+ *
+ * 一次价格查询的结果报告。
+ * 不再要求所有商店都返回之后才给出答案：在截止时间内返回的Quote放在quotes中，
+ * 超时的商店记录在timedOut中，执行出错的商店和对应的异常记录在failed中。
+ */
+public class PriceReport {
+
+    private final String product;
+    private final List<Quote> quotes;
+    private final List<String> timedOut;
+    private final Map<String,Throwable> failed;
+
+    PriceReport(String product, List<Quote> quotes,
+                List<String> timedOut, Map<String, Throwable> failed) {
+        this.product = product;
+        this.quotes = Collections.unmodifiableList(quotes);
+        this.timedOut = Collections.unmodifiableList(timedOut);
+        this.failed = Collections.unmodifiableMap(failed);
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    /**
+     * 在截止时间内到达的报价，顺序与商店列表一致
+     */
+    public List<Quote> getQuotes() {
+        return quotes;
+    }
+
+    /**
+     * 超过截止时间仍未返回的商店名称
+     */
+    public List<String> getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * 返回异常的商店名称，以及导致失败的异常
+     */
+    public Map<String, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * 所有商店都按时返回了报价
+     */
+    public boolean isComplete(){
+        return timedOut.isEmpty()&&failed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(product).append(" [");
+        for (int i = 0; i < quotes.size(); i++) {
+            Quote quote = quotes.get(i);
+            if(i>0) sb.append(", ");
+            sb.append(quote.getShopName()).append(':')
+                    .append(quote.getPrice()).append(':')
+                    .append(quote.getDicountCode());
+        }
+        sb.append("]");
+        if(!timedOut.isEmpty()) sb.append(" timedOut=").append(timedOut);
+        if(!failed.isEmpty()) sb.append(" failed=").append(failed.keySet());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 16:40
+ *
+ * 区分优先级的价格查询执行器。
+ *
+ * BootStrap.executor是一个FIFO队列，批量重新定价的后台任务一多，结账时的交互查询就只能
+ * 排在它们后面。这里每个优先级有自己的队列，工作线程按加权公平的方式（stride调度）
+ * 在各个队列之间选择下一个任务：权重为4的队列大约能拿到权重为1的队列4倍的执行机会，
+ * 但权重小的队列也不会被饿死。另外每个优先级还有自己的并发上限，
+ * 即使交互查询暂时没有任务，后台任务也占不满所有线程。
+ *
+ * 通过forClass(Priority)取得对应优先级的执行器，交给findPricesAys或findPricesStream使用。
+ * 队列满了之后和其它实现一样由提交任务的线程自己执行。
+ */
+public class PriorityPriceExecutor {
+
+    public enum Priority {
+        INTERACTIVE,//结账等用户正在等待的查询
+        BACKGROUND//批量重新定价等后台任务
+    }
+
+    private static final long STRIDE = 1L << 20;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    private final int threads;
+    private long virtualTime;//最近一次分派的任务所在队列的pass
+
+    /**
+     * @param weights 每个优先级的权重，没有列出的优先级不可用
+     * @param limits  每个优先级最多同时占用的线程数
+     */
+    public PriorityPriceExecutor(int threads, Map<Priority, Integer> weights, Map<Priority, Integer> limits,
+                                 int queueCapacity, ThreadFactory threadFactory) {
+        if(threads < 1 || queueCapacity < 1){
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        for (Map.Entry<Priority, Integer> entry : weights.entrySet()) {
+            Integer limit = limits.get(entry.getKey());
+            if(entry.getValue() < 1 || limit == null || limit < 1){
+                throw new IllegalArgumentException("weight and limit of " + entry.getKey() + " must be positive");
+            }
+            lanes.put(entry.getKey(), new Lane(entry.getKey(), entry.getValue(), Math.min(limit, threads),
+                    queueCapacity));
+        }
+        this.threads = threads;
+        for (int i = 0; i < threads; i++) {
+            threadFactory.newThread(this::work).start();
+        }
+    }
+
+    /**
+     * 指定优先级的执行器视图，getStats只统计这个优先级的任务
+     */
+    public PriceExecutor forClass(Priority priority){
+        Lane lane = lanes.get(priority);
+        if(lane == null){
+            throw new IllegalArgumentException("priority " + priority + " is not configured");
+        }
+        return lane;
+    }
+
+    public PriceExecutor interactive(){
+        return forClass(Priority.INTERACTIVE);
+    }
+
+    public PriceExecutor background(){
+        return forClass(Priority.BACKGROUND);
+    }
+
+    /**
+     * 所有优先级合计的统计
+     */
+    public ExecutorStats getStats(){
+        lock.lock();
+        try {
+            int active = 0, queued = 0;
+            long completed = 0, rejected = 0;
+            for (Lane lane : lanes.values()) {
+                active += lane.running;
+                queued += lane.queue.size();
+                completed += lane.completed;
+                rejected += lane.rejected;
+            }
+            return new ExecutorStats(threads, active, queued, completed, rejected);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work(){
+        while (true){
+            Lane lane;
+            Runnable task;
+            lock.lock();
+            try {
+                while ((lane = next()) == null){
+                    ready.awaitUninterruptibly();
+                }
+                task = lane.queue.poll();
+                lane.running++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                //CompletableFuture的任务会自己捕获异常，这里只是保证工作线程不会退出
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            } finally {
+                lock.lock();
+                try {
+                    lane.running--;
+                    lane.completed++;
+                    ready.signal();//可能有队列因为并发上限在等待
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 在有任务且没有达到并发上限的队列中选择pass最小的一个，选中后pass前进STRIDE/weight。
+     * 必须持有锁
+     */
+    private Lane next(){
+        Lane selected = null;
+        for (Lane lane : lanes.values()) {
+            if(lane.queue.isEmpty() || lane.running >= lane.limit){
+                continue;
+            }
+            if(selected == null || lane.pass < selected.pass){
+                selected = lane;
+            }
+        }
+        if(selected != null){
+            virtualTime = selected.pass;
+            selected.pass += selected.stride;
+        }
+        return selected;
+    }
+
+    private final class Lane implements PriceExecutor {
+
+        private final Priority priority;
+        private final long stride;
+        private final int limit;
+        private final int capacity;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private long pass;
+        private int running;
+        private long completed;
+        private long rejected;
+
+        Lane(Priority priority, int weight, int limit, int capacity) {
+            this.priority = priority;
+            this.stride = STRIDE / weight;
+            this.limit = limit;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            lock.lock();
+            try {
+                if(queue.size() < capacity){
+                    if(queue.isEmpty() && running == 0){
+                        //空闲过的队列从当前的虚拟时间开始，不能把空闲期间攒下的份额一次用掉
+                        pass = Math.max(pass, virtualTime);
+                    }
+                    queue.add(command);
+                    ready.signal();
+                    return;
+                }
+                rejected++;
+            } finally {
+                lock.unlock();
+            }
+            command.run();//队列满了，由提交任务的线程自己执行，形成背压
+        }
+
+        @Override
+        public ExecutorStats getStats() {
+            lock.lock();
+            try {
+                return new ExecutorStats(limit, running, queue.size(), completed, rejected);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PriorityPriceExecutor." + priority;
+        }
+    }
+}
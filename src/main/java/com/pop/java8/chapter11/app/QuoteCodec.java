@@ -0,0 +1,213 @@
+package com.pop.java8.chapter11.app;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 16:30
+ *
+ * Quote的编解码。
+ *
+ * Shop.getPriceEnum用String.format拼出name:price:code，Quote.parse再用split(":")、
+ * Double.parseDouble和Code.valueOf拆开，高并发时这些临时对象排在内存分配的最前面。
+ * 这里提供两种格式：
+ *
+ *  二进制格式，写入可复用的ByteBuffer，布局固定：
+ *      [1字节 折扣码ordinal][8字节 价格double][2字节 名称长度n][n个char 名称]
+ *  文本格式，与原来的ShopName:price:DiscountCode完全兼容，作为兼容的后备方案，
+ *  只是格式化和解析都改成了手写的实现，不再创建中间数组和Formatter
+ *
+ * 解码时商店名称通过一个小的驻留表复用已有的String，同一家商店不会每次都创建新的名称。
+ *
+ * 两种格式的价格都先用cents舍入到分，舍入方式与%.2f相同，
+ * 所以同一个报价不论走哪种格式，解出来的价格都相等。
+ */
+public final class QuoteCodec {
+
+    private static final Discount.Code[] CODES = Discount.Code.values();//values()每次都会复制数组
+    private static final int NAME_TABLE_SIZE = 1024;//必须是2的幂
+    private static final String[] names = new String[NAME_TABLE_SIZE];
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+    private static final double[] POW10 = {1, 10, 100, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private QuoteCodec() {
+    }
+
+    /**
+     * 当前线程可复用的缓冲区，已经clear
+     */
+    public static ByteBuffer buffer(){
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    // ---------------------------------------------------------------- 二进制格式
+
+    public static void encode(String shopName, double price, Discount.Code code, ByteBuffer out){
+        int length = shopName.length();
+        out.put((byte) code.ordinal());
+        out.putDouble(cents(price) / 100.0);//与parse(format(...))得到的double相同
+        out.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            out.putChar(shopName.charAt(i));
+        }
+    }
+
+    public static void encode(Quote quote, ByteBuffer out){
+        encode(quote.getShopName(), quote.getPrice(), quote.getDicountCode(), out);
+    }
+
+    public static Quote decode(ByteBuffer in){
+        Discount.Code code = CODES[in.get()];
+        double price = in.getDouble();
+        int length = in.getShort() & 0xFFFF;
+        String shopName = readName(in, length);
+        return new Quote(shopName, price, code);
+    }
+
+    /**
+     * 先按名称的哈希在驻留表里找，字符完全一致就直接复用，否则才创建新的String
+     */
+    private static String readName(ByteBuffer in, int length){
+        int start = in.position();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + in.getChar(start + 2 * i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_TABLE_SIZE - 1);
+        String cached = names[slot];
+        if(cached != null && cached.length() == length && matches(cached, in, start)){
+            in.position(start + 2 * length);
+            return cached;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.getChar();
+        }
+        String name = new String(chars);
+        names[slot] = name;//多个线程同时写入也只是覆盖掉一个缓存项，不影响正确性
+        return name;
+    }
+
+    private static boolean matches(String name, ByteBuffer in, int start){
+        for (int i = 0; i < name.length(); i++) {
+            if(name.charAt(i) != in.getChar(start + 2 * i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- 文本格式
+
+    /**
+     * 与String.format("%s:%.2f:%s")的结果相同，但不受默认Locale的小数点影响
+     */
+    public static String format(String shopName, double price, Discount.Code code){
+        StringBuilder sb = new StringBuilder(shopName.length() + 24);
+        sb.append(shopName).append(':');
+        appendPrice(sb, price);
+        return sb.append(':').append(code.name()).toString();
+    }
+
+    /**
+     * 按%.2f的规则把价格舍入到分：对价格的十进制表示（Double.toString）做HALF_UP。
+     * 直接Math.round(price * 100)在1.005这样的情况下会出错，1.005实际存的是1.00499999...，
+     * 乘以100之后舍掉了，而%.2f得到1.01。只有乘积非常接近x.5时才需要用BigDecimal按十进制处理
+     */
+    static long cents(double price){
+        double scaled = price * 100;
+        if(Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6){
+            return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+        return Math.round(scaled);
+    }
+
+    static void appendPrice(StringBuilder sb, double price){
+        long cents = cents(price);
+        if(cents < 0){
+            sb.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        sb.append(cents / 100).append('.');
+        if(fraction < 10) sb.append('0');
+        sb.append(fraction);
+    }
+
+    /**
+     * 与Quote.parse原来基于split的实现结果一致，但只扫描一遍字符串
+     */
+    public static Quote parse(CharSequence s){
+        int first = indexOf(s, ':', 0);
+        int second = first < 0 ? -1 : indexOf(s, ':', first + 1);
+        if(second < 0){
+            throw new IllegalArgumentException("not a quote: " + s);
+        }
+        String shopName = s.subSequence(0, first).toString();
+        double price = parsePrice(s, first + 1, second);
+        Discount.Code code = code(s, second + 1, s.length());
+        return new Quote(shopName, price, code);
+    }
+
+    private static int indexOf(CharSequence s, char c, int from){
+        for (int i = from; i < s.length(); i++) {
+            if(s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 只处理报价里会出现的形式：可选的负号、整数部分、可选的小数部分。
+     * 其他形式（指数、NaN等）交给Double.parseDouble
+     */
+    static double parsePrice(CharSequence s, int start, int end){
+        int i = start;
+        boolean negative = i < end && s.charAt(i) == '-';
+        if(negative) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if(c >= '0' && c <= '9'){
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+            }else if(c == '.' && scale < 0){
+                scale = 0;
+                continue;
+            }else{
+                digits = Integer.MAX_VALUE;//出现了无法识别的字符
+                break;
+            }
+            if(scale >= 0) scale++;
+        }
+        if(digits == 0 || digits > 15){//15位以内的整数和10的幂都能被double精确表示，一次除法的结果与parseDouble一致
+            return Double.parseDouble(s.subSequence(start, end).toString());
+        }
+        double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static Discount.Code code(CharSequence s, int start, int end){
+        for (Discount.Code code : CODES) {
+            String name = code.name();
+            if(name.length() == end - start && regionMatches(s, start, name)){
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("unknown discount code: " + s.subSequence(start, end));
+    }
+
+    private static boolean regionMatches(CharSequence s, int start, String name){
+        for (int i = 0; i < name.length(); i++) {
+            if(s.charAt(start + i) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
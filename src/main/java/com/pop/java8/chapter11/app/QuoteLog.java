@@ -0,0 +1,271 @@
+package com.pop.java8.chapter11.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 18:20
+ *
+ * 只追加的报价日志，用内存映射文件实现。
+ *
+ * 价格查询器重启之后所有缓存的价格都丢失了，最初的几分钟所有请求都会打到商店上。
+ * 这里把每一个查询到的报价（商品、Quote和查询时间）以二进制格式追加到日志中，
+ * 重启时按顺序回放就可以把内存中的状态恢复回来。
+ *
+ * 文件格式：
+ *  文件头   int MAGIC
+ *  每条记录 int 记录体长度, int 记录体的CRC32, 记录体
+ *  记录体   long 时间戳(毫秒), short 商品名长度, 商品名(UTF-16), Quote(QuoteCodec的二进制格式)
+ * 映射区域中没有写过的部分都是0，所以读到长度为0就是日志的末尾。写入时最后才写长度，
+ * 进程在写到一半时崩溃，留下的只是一条长度为0或者CRC对不上的记录，回放到那里就停止，
+ * 之后的写入会覆盖掉它。
+ *
+ * 同一个(商店,商品)只有最后一条报价有用。日志超过compactThreshold时做一次压缩：
+ * 只把每个(商店,商品)最新的记录复制到新文件，再原子地替换掉旧文件。
+ *
+ * 整个日志只映射成一个MappedByteBuffer，位置都是int，所以日志最大是Integer.MAX_VALUE字节（2GB）。
+ * compactThreshold必须小于这个上限；压缩之后仍然放不下新的记录时append抛出UncheckedIOException，
+ * 打开超过2GB的文件时抛出IOException。
+ */
+public class QuoteLog implements Closeable {
+
+    /**
+     * 回放时依次收到每一条记录
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(String product, Quote quote, long timestamp);
+    }
+
+    private static final int MAGIC = 0x51544C31;//"QTL1"
+    private static final int RECORD_HEADER = 8;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final int MAX_BODY = 8 + 2 + 2 * 0xFFFF + 1 + 8 + 2 + 2 * 0xFFFF;
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final long minCompactThreshold;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;//position就是下一条记录的位置
+    private long compactThreshold;
+    private long appended;
+    private long compactions;
+
+    private QuoteLog(Path path, long compactThreshold) {
+        this.path = path;
+        this.minCompactThreshold = compactThreshold;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * 打开（或者创建）日志，把已有的记录按写入顺序交给visitor，然后定位到末尾准备追加
+     *
+     * @param compactThreshold 日志超过这个字节数时自动压缩，不能超过2GB
+     */
+    public static QuoteLog open(Path path, long compactThreshold, Visitor visitor) throws IOException {
+        if(compactThreshold <= 0 || compactThreshold > MAX_SIZE){
+            throw new IllegalArgumentException("compactThreshold must be in (0, 2GB]: " + compactThreshold);
+        }
+        QuoteLog log = new QuoteLog(path, compactThreshold);
+        log.map(path);
+        int end = scan(log.buffer, (offset, length, product, quote, timestamp) ->
+                visitor.visit(product, quote, timestamp));
+        //末尾可能是一条没有写完的记录，清掉它，避免之后写入的较短记录后面残留旧的字节
+        int garbage = Math.min(log.buffer.limit(), end + RECORD_HEADER + MAX_BODY);
+        for (int i = end; i < garbage; i++) {
+            log.buffer.put(i, (byte) 0);
+        }
+        log.buffer.position(end);
+        return log;
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if(size > MAX_SIZE){
+            channel.close();
+            throw new IOException(file + " exceeds 2GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if(size == 0){
+            buffer.putInt(0, MAGIC);
+        }else if(buffer.getInt(0) != MAGIC){
+            channel.close();
+            throw new IOException(file + " is not a quote log");
+        }
+        buffer.position(4);
+    }
+
+    /**
+     * 追加一条报价。映射区域不够时按两倍扩大，超过压缩阈值时先压缩
+     */
+    public synchronized void append(String product, Quote quote, long timestamp){
+        String shopName = quote.getShopName();
+        if(product.length() > 0xFFFF || shopName.length() > 0xFFFF){
+            throw new IllegalArgumentException("product and shop name must be shorter than 65536 chars");
+        }
+        int bodyLength = 8 + 2 + 2 * product.length() + 1 + 8 + 2 + 2 * shopName.length();
+        try {
+            if(buffer.position() + RECORD_HEADER + bodyLength > compactThreshold){
+                compact();
+            }
+            ensureCapacity(RECORD_HEADER + bodyLength + 4);//末尾至少保留一个为0的长度
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER);
+        buffer.putLong(timestamp);
+        buffer.putShort((short) product.length());
+        for (int i = 0; i < product.length(); i++) {
+            buffer.putChar(product.charAt(i));
+        }
+        QuoteCodec.encode(quote, buffer);
+        buffer.putInt(start + 4, checksum(buffer, start + RECORD_HEADER, bodyLength));
+        buffer.putInt(start, bodyLength);
+        appended++;
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if(buffer.remaining() >= needed){
+            return;
+        }
+        if((long) buffer.position() + needed > MAX_SIZE){
+            throw new IOException("quote log " + path + " exceeds 2GB");
+        }
+        long capacity = buffer.capacity();
+        while (capacity - buffer.position() < needed){
+            capacity = Math.min(capacity * 2, MAX_SIZE);//最后一次扩大到正好2GB
+        }
+        int position = buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+    }
+
+    /**
+     * 只保留每个(商店,商品)最新的一条记录
+     */
+    public synchronized void compact() throws IOException {
+        Map<String, long[]> latest = new LinkedHashMap<>();
+        ByteBuffer live = buffer.duplicate();
+        live.limit(buffer.position());
+        scan(live, (offset, length, product, quote, timestamp) -> {
+            String key = quote.getShopName() + '\u0000' + product;
+            latest.remove(key);//保持按写入时间的顺序
+            latest.put(key, new long[]{offset, length});
+        });
+
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(0, MAGIC);
+            while (header.hasRemaining()) out.write(header);
+            for (long[] record : latest.values()) {
+                ByteBuffer slice = buffer.duplicate();
+                slice.limit((int) (record[0] + record[1])).position((int) record[0]);
+                while (slice.hasRemaining()) out.write(slice);
+            }
+            out.force(true);
+        }
+        force();
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(path);
+        buffer.position(scan(buffer, (offset, length, product, quote, timestamp) -> {}));
+        //压缩后仍然很大时不要每次追加都压缩
+        compactThreshold = Math.min(MAX_SIZE, Math.max(minCompactThreshold, buffer.position() * 2L));
+        compactions++;
+    }
+
+    /**
+     * 从文件头之后开始依次读取完整的记录，返回第一条不完整记录（或者末尾）的位置
+     */
+    private static int scan(ByteBuffer log, RecordHandler handler){
+        ByteBuffer in = log.duplicate();
+        int position = 4;
+        CRC32 crc = new CRC32();
+        while (in.limit() - position >= RECORD_HEADER){
+            int length = in.getInt(position);
+            if(length <= 0 || length > in.limit() - position - RECORD_HEADER){
+                break;
+            }
+            int body = position + RECORD_HEADER;
+            in.limit(body + length).position(body);
+            crc.reset();
+            crc.update(in);
+            if((int) crc.getValue() != in.getInt(position + 4)){
+                break;
+            }
+            in.position(body);
+            long timestamp = in.getLong();
+            char[] product = new char[in.getShort() & 0xFFFF];
+            for (int i = 0; i < product.length; i++) {
+                product[i] = in.getChar();
+            }
+            Quote quote = QuoteCodec.decode(in);
+            in.limit(log.limit());
+            handler.handle(position, RECORD_HEADER + length, new String(product), quote, timestamp);
+            position = body + length;
+        }
+        return position;
+    }
+
+    private int checksum(ByteBuffer log, int start, int length){
+        ByteBuffer body = log.duplicate();
+        body.limit(start + length).position(start);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 把映射区域中修改过的页写回磁盘
+     */
+    public synchronized void force(){
+        buffer.force();
+    }
+
+    /**
+     * 日志中已经使用的字节数
+     */
+    public synchronized long size(){
+        return buffer.position();
+    }
+
+    public synchronized long getAppended(){
+        return appended;
+    }
+
+    public synchronized long getCompactions(){
+        return compactions;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();//映射区域本身要等到被GC回收时才会释放
+    }
+
+    @Override
+    public String toString() {
+        return "QuoteLog{path=" + path + ", size=" + size() + ", appended=" + getAppended()
+                + ", compactions=" + getCompactions() + '}';
+    }
+
+    private interface RecordHandler {
+        void handle(long offset, long length, String product, Quote quote, long timestamp);
+    }
+}
@@ -0,0 +1,120 @@
+package com.pop.java8.chapter11.app;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 17:20
+ *
+ * 分片模式下的工作进程，由ShardedPriceFinder启动。
+ *
+ * 进程只在回环地址上监听一个随机端口，启动后把端口号作为第一行写到标准输出。
+ * 每个连接处理一次查询：读入商品名和分给自己的商店名，在本进程的执行器上并发查询
+ * 这些商店，再按请求中的顺序把报价写回去。协议使用DataInput/DataOutput：
+ *  请求  UTF 商品名, int 商店数, 每家商店 UTF 名字
+ *  响应  int 商店数, 每家商店 boolean 是否成功, UTF 报价（BestPrice:123.26:GOLD）或者错误信息
+ * 标准输入被关闭（协调者退出）时，工作进程也随之退出，不会留下孤儿进程。
+ *
+ * 请求里只有商店的名字，工作进程按名字创建普通的Shop：协调者一侧的CachingShop缓存、
+ * SimulatedShop的延迟分布和失败率都不会传过来，分片模式下查询的总是没有缓存的默认商店。
+ */
+public class ShardWorker {
+
+    private final Map<String, Shop> shops = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    ShardWorker(Executor executor) {
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        System.out.println(server.getLocalPort());
+        System.out.flush();
+
+        Thread watchdog = new Thread(() -> {
+            try {
+                while (System.in.read() != -1){
+                    //协调者不会写入任何内容，只等待管道关闭
+                }
+            } catch (IOException ignored) {
+            }
+            System.exit(0);
+        }, "shard-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        int shopCount = args.length > 0 ? Integer.parseInt(args[0]) : 0;//分到的商店数，用来确定初始线程数
+        ShardWorker worker = new ShardWorker(PriceExecutors.create(shopCount));
+        ExecutorService connections = Executors.newCachedThreadPool(PriceExecutors.daemonThreadFactory("shard-conn"));
+        while (true){
+            Socket socket = server.accept();
+            connections.execute(() -> worker.serve(socket));
+        }
+    }
+
+    private void serve(Socket socket){
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            String product = in.readUTF();
+            int count = in.readInt();
+            List<CompletableFuture<String>> quotes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Shop shop = shops.computeIfAbsent(in.readUTF(), Shop::new);//只有名字，见类注释
+                quotes.add(CompletableFuture.supplyAsync(() -> shop.getPriceEnum(product), executor));
+            }
+            out.writeInt(count);
+            for (CompletableFuture<String> quote : quotes) {
+                try {
+                    String value = quote.join();
+                    out.writeBoolean(true);
+                    out.writeUTF(value);
+                } catch (CompletionException e) {
+                    out.writeBoolean(false);
+                    out.writeUTF(String.valueOf(e.getCause()));
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            //协调者已经断开，这次查询的结果没有人需要了
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, String product, List<String> shopNames) throws IOException {
+        out.writeUTF(product);
+        out.writeInt(shopNames.size());
+        for (String name : shopNames) {
+            out.writeUTF(name);
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取响应并解析成Quote，顺序与请求中的商店顺序一致。
+     * 某家商店在工作进程里查询失败时抛出ShopUnavailableException
+     */
+    static List<Quote> readResponse(DataInputStream in, List<String> shopNames) throws IOException {
+        int count = in.readInt();
+        if(count != shopNames.size()){
+            throw new IOException("expected " + shopNames.size() + " quotes but got " + count);
+        }
+        List<Quote> quotes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean ok = in.readBoolean();
+            String value = in.readUTF();
+            if(!ok){
+                throw new ShopUnavailableException(shopNames.get(i) + " failed in shard worker: " + value);
+            }
+            quotes.add(Quote.parse(value));
+        }
+        return quotes;
+    }
+}
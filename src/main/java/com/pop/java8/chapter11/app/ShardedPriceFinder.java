@@ -0,0 +1,291 @@
+package com.pop.java8.chapter11.app;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 17:45
+ *
+ * 分片模式的协调者。
+ *
+ * BootStrap.shops是进程内的静态列表，查询能力受限于一个JVM的线程数和堆大小。
+ * 这里启动几个本机的ShardWorker进程，把商店按轮询的方式分给它们，一次查询时
+ * 并发地向每个工作进程发送分给它的商店，再把返回的Quote按商店原来的顺序合并起来。
+ *
+ * 工作进程崩溃（连接失败或者连接中途断开）时把它标记为失效，
+ * 它的商店重新分给还存活的工作进程，本次查询中受影响的商店也会在新的工作进程上重试。
+ * 所有工作进程都失效之后查询直接失败。
+ *
+ * 读超时不算崩溃：工作进程很可能只是忙，杀掉它只会把负载压到剩下的进程上，
+ * 让它们也接连超时。所以读超时只让这一次查询以ShopUnavailableException失败，
+ * 工作进程保持存活。读超时的时长随着这个工作进程上正在查询的商店数增加，见Worker.readTimeout。
+ *
+ * 与工作进程通信的线程会在socket上阻塞到读超时（READ_TIMEOUT的若干倍），所以协调者
+ * 使用自己的I/O线程池，不占用价格流水线的BootStrap.executor。
+ *
+ * 工作进程只收到商店的名字，在自己的进程里用new Shop(name)查询，
+ * 本进程中商店的包装和配置（CachingShop的缓存、SimulatedShop的延迟和失败率等）不会带过去。
+ */
+public class ShardedPriceFinder implements AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT = 1_000;
+    private static final int READ_TIMEOUT = 10_000;//工作进程空闲时一次查询的读超时，比一次商店查询的延迟长得多
+
+    private final List<String> shopNames;
+    private final List<Worker> workers;
+    private final Map<String, Worker> owners = new ConcurrentHashMap<>();
+    private final ExecutorService io = Executors.newCachedThreadPool(PriceExecutors.daemonThreadFactory("shard-io"));
+    private final AtomicLong reassigned = new AtomicLong();
+
+    private ShardedPriceFinder(List<String> shopNames, List<Worker> workers) {
+        this.shopNames = shopNames;
+        this.workers = workers;
+        for (int i = 0; i < shopNames.size(); i++) {
+            owners.put(shopNames.get(i), workers.get(i % workers.size()));
+        }
+    }
+
+    /**
+     * 启动workerCount个工作进程，使用与当前进程相同的java和classpath
+     */
+    public static ShardedPriceFinder start(List<String> shopNames, int workerCount) throws IOException {
+        if(workerCount < 1){
+            throw new IllegalArgumentException("workerCount must be positive");
+        }
+        List<String> names = Collections.unmodifiableList(new ArrayList<>(shopNames));
+        if(new HashSet<>(names).size() != names.size()){
+            throw new IllegalArgumentException("shop names must be unique");
+        }
+        int shopsPerWorker = (names.size() + workerCount - 1) / workerCount;
+        List<Worker> workers = new ArrayList<>(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(Worker.spawn(i, shopsPerWorker));
+            }
+        } catch (IOException e) {
+            workers.forEach(Worker::destroy);
+            throw e;
+        }
+        return new ShardedPriceFinder(names, workers);
+    }
+
+    /**
+     * 查询所有商店的报价，结果与启动时的商店顺序一致
+     */
+    public CompletableFuture<List<Quote>> findQuotes(String product){
+        return fanOut(shopNames, product, workers.size())
+                .thenApply(quotes -> shopNames.stream()
+                        .map(quotes::get)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * 按当前的分配把shops分组发给各自的工作进程，
+     * 每次工作进程失效后的重试都会消耗一次attempts
+     */
+    private CompletableFuture<Map<String, Quote>> fanOut(List<String> shops, String product, int attempts){
+        Map<Worker, List<String>> plan = new LinkedHashMap<>();
+        for (String shop : shops) {
+            Worker owner = owners.get(shop);
+            if(!owner.alive){
+                CompletableFuture<Map<String, Quote>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new ShopUnavailableException("no live shard worker for " + shop));
+                return failed;
+            }
+            plan.computeIfAbsent(owner, w -> new ArrayList<>()).add(shop);
+        }
+        List<CompletableFuture<Map<String, Quote>>> parts = plan.entrySet().stream()
+                .map(e -> query(e.getKey(), e.getValue(), product, attempts))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    Map<String, Quote> merged = new HashMap<>();
+                    parts.forEach(part -> merged.putAll(part.join()));
+                    return merged;
+                });
+    }
+
+    private CompletableFuture<Map<String, Quote>> query(Worker worker, List<String> shops, String product,
+                                                        int attempts){
+        return CompletableFuture.supplyAsync(() -> worker.call(product, shops), io)
+                .handle((quotes, e) -> {
+                    if(e == null){
+                        return CompletableFuture.completedFuture(quotes);
+                    }
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if(!(cause instanceof UncheckedIOException) || attempts <= 1){
+                        CompletableFuture<Map<String, Quote>> failed = new CompletableFuture<>();
+                        failed.completeExceptionally(cause);
+                        return failed;
+                    }
+                    markDead(worker, cause);
+                    return fanOut(shops, product, attempts - 1);//在接手的工作进程上重试
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 把失效工作进程的商店轮流分给还存活的工作进程，同一个工作进程只处理一次
+     */
+    private synchronized void markDead(Worker worker, Throwable cause){
+        if(!worker.alive){
+            return;
+        }
+        worker.alive = false;
+        worker.destroy();
+        List<Worker> live = workers.stream().filter(w -> w.alive).collect(Collectors.toList());
+        System.err.println("shard worker " + worker.id + " failed (" + cause.getMessage() + "), "
+                + live.size() + " workers left");
+        if(live.isEmpty()){
+            return;
+        }
+        int next = 0;
+        for (String shop : shopNames) {
+            if(owners.get(shop) == worker){
+                owners.put(shop, live.get(next++ % live.size()));
+                reassigned.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 当前每个存活的工作进程负责的商店
+     */
+    public Map<Integer, List<String>> getAssignment(){
+        Map<Integer, List<String>> assignment = new TreeMap<>();
+        for (String shop : shopNames) {
+            Worker owner = owners.get(shop);
+            if(owner.alive){
+                assignment.computeIfAbsent(owner.id, id -> new ArrayList<>()).add(shop);
+            }
+        }
+        return assignment;
+    }
+
+    public long getReassigned(){
+        return reassigned.get();
+    }
+
+    /**
+     * 直接结束某个工作进程并等它退出，用来演示崩溃后的重新分配。
+     * 协调者这时还不知道，下一次连接失败时才把它标记为失效
+     */
+    void kill(int workerId){
+        Process process = workers.get(workerId).process;
+        process.destroy();
+        try {
+            process.waitFor(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.forEach(Worker::destroy);
+        io.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedPriceFinder{assignment=" + getAssignment() + ", reassigned=" + getReassigned() + '}';
+    }
+
+    private static final class Worker {
+
+        private final int id;
+        private final Process process;
+        private final int port;
+        private final int capacity;//工作进程启动时按分到的商店数确定的线程数
+        private final AtomicInteger pending = new AtomicInteger();//正在这个工作进程上查询的商店数
+        private volatile boolean alive = true;
+
+        private Worker(int id, Process process, int port, int capacity) {
+            this.id = id;
+            this.process = process;
+            this.port = port;
+            this.capacity = Math.max(1, capacity);
+        }
+
+        static Worker spawn(int id, int shopCount) throws IOException {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ShardWorker.class.getName(), String.valueOf(shopCount))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            //标准输入保持打开，协调者退出时管道关闭，工作进程随之退出
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if(line == null){
+                process.destroy();
+                throw new IOException("shard worker " + id + " exited before reporting its port");
+            }
+            try {
+                return new Worker(id, process, Integer.parseInt(line.trim()), shopCount);
+            } catch (NumberFormatException e) {
+                process.destroy();
+                throw new IOException("unexpected output from shard worker " + id + ": " + line);
+            }
+        }
+
+        /**
+         * 工作进程同时最多查询capacity家商店，排在后面的要多等几轮，
+         * 每多一轮读超时就多一个READ_TIMEOUT
+         */
+        int readTimeout(int queued){
+            return READ_TIMEOUT * (1 + (queued - 1) / capacity);
+        }
+
+        Map<String, Quote> call(String product, List<String> shops){
+            int queued = pending.addAndGet(shops.size());
+            boolean connected = false;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+                connected = true;
+                socket.setSoTimeout(readTimeout(queued));
+                socket.setTcpNoDelay(true);
+                ShardWorker.writeRequest(new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream())), product, shops);
+                List<Quote> quotes = ShardWorker.readResponse(new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream())), shops);
+                Map<String, Quote> result = new HashMap<>();
+                for (int i = 0; i < shops.size(); i++) {
+                    result.put(shops.get(i), quotes.get(i));
+                }
+                return result;
+            } catch (SocketTimeoutException e) {
+                if(connected){
+                    //工作进程还在，只是没有及时返回，不把它当作崩溃
+                    throw new ShopUnavailableException("shard worker " + id + " did not answer within "
+                            + readTimeout(queued) + " ms", e);
+                }
+                throw new UncheckedIOException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                pending.addAndGet(-shops.size());
+            }
+        }
+
+        void destroy(){
+            process.destroy();
+        }
+    }
+}
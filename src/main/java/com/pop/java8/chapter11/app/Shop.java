@@ -1,8 +1,16 @@
 package com.pop.java8.chapter11.app;
 
-import java.util.Random;
+import com.pop.java8.chapter11.Futures;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Pop
@@ -50,7 +58,8 @@ public class Shop {
         try {
             Thread.sleep(1000L);
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            //提前结束等待，但要恢复中断标志，让调用方自己决定如何处理，见submitPrice
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -60,14 +69,27 @@ public class Shop {
      * 称，生成一个随机值作为价格。
      */
 
-    Random random = new Random();
+    private static final Discount.Code[] CODES = Discount.Code.values();//values()每次都会复制数组
 
     private double calculatePrice(String product){
         delay();
-        return random.nextDouble()
+        return randomPrice(product);
+    }
+
+    /**
+     * 原来每个Shop共用一个Random字段，每次nextDouble都要CAS更新同一个种子，
+     * 很多执行器线程同时查询同一家商店时就成了竞争热点。
+     * 改为ThreadLocalRandom，每个线程有自己的种子，不再互相竞争；randomCode也一样。
+     */
+    private static double randomPrice(String product){
+        return ThreadLocalRandom.current().nextDouble()
                 *product.charAt(0)+product.charAt(1);
     }
 
+    private static Discount.Code randomCode(){
+        return CODES[ThreadLocalRandom.current().nextInt(CODES.length)];
+    }
+
     /**
      * 很明显，这个API的使用者（这个例子中为最佳价格查询器）调用该方法时，它依旧会被
      * 阻塞。为等待同步事件完成而等待1秒钟，这是无法接受的，尤其是考虑到最佳价格查询器对
@@ -92,12 +114,39 @@ public class Shop {
      */
 
     public Future<Double> getPriceAsync(String product){
-        CompletableFuture<Double> future = new CompletableFuture<>();
-        new Thread(()->{
-            double price = calculatePrice(product);
-            future.complete(price);//需要长时间计算的任务结果，在这里完成
-        }).start();
-        return  future;
+        //不再每次调用都新建一个线程计算价格，开销大而且没有上限，改为提交到共享的执行器
+        return submitPrice(product);
+    }
+
+    /**
+     * 所有商店共享的异步执行器，线程数有上限，不再每次调用新建线程。
+     * 队列满了时直接拒绝：getPriceAsync的调用方不能被拉去执行1秒钟的计算，
+     * 拒绝会让返回的Future以RejectedExecutionException结束
+     */
+    private static final PriceExecutor asyncExecutor =
+            PriceExecutors.adaptive(Runtime.getRuntime().availableProcessors(), new ThreadPoolExecutor.AbortPolicy());
+
+    /**
+     * 把价格计算提交给共享的执行器。返回的Future被取消或者异常完成（比如超时）时，
+     * 会中断正在执行的计算，而不是让它在后台继续占着线程。
+     * 计算调用的是getPrice，所有异步方法都会经过子类覆盖的getPrice
+     */
+    protected CompletableFuture<Double> submitPrice(String product){
+        return Futures.supplyInterruptibly(()->{
+            double price = getPrice(product);
+            if(Thread.interrupted()){
+                throw new InterruptedException();//delay被打断，算出来的价格不可信
+            }
+            return price;
+        }, asyncExecutor);
+    }
+
+    /**
+     * 带超时的异步查询：超过timeout仍未返回时，返回的Future以TimeoutException结束，
+     * 并且中断正在进行的计算；调用方cancel返回的Future也同样会中断计算
+     */
+    public CompletableFuture<Double> getPriceAsync(String product, long timeout, TimeUnit unit){
+        return Futures.within(submitPrice(product), timeout, unit);
     }
 
     public static void main(String[] args) {
@@ -149,17 +198,8 @@ public class Shop {
      */
 
     public Future<Double> getPriceAsyncException(String product){
-        CompletableFuture<Double> future = new CompletableFuture<>();
-        new Thread(()->{
-            try {
-                double price = calculatePrice(product);
-                future.complete(price);//需要长时间计算的任务结果，在这里完成
-            }catch (Exception e){
-                future.completeExceptionally(e);//抛出这个异常，完成这次Future操作
-            }
-
-        }).start();
-        return  future;
+        //submitPrice会用completeExceptionally把计算中的异常交给调用方
+        return submitPrice(product);
     }
 
     /**
@@ -172,7 +212,7 @@ public class Shop {
      */
 
     public Future<Double> getPriceAsync1(String product){
-        return CompletableFuture.supplyAsync(()->calculatePrice(product));
+        return CompletableFuture.supplyAsync(()->getPrice(product));
     }
 
     /**
@@ -202,9 +242,33 @@ public class Shop {
      */
     public String getPriceEnum(String product){
         double price = calculatePrice(product);
-        Discount.Code code = Discount.Code.
-                values()[random.nextInt(Discount.Code.values().length)];
-        return String.format("%s:%.2f:%s",name,price,code);
+        Discount.Code code = randomCode();
+        return QuoteCodec.format(name,price,code);//与String.format("%s:%.2f:%s")的格式相同，省掉Formatter的开销
+    }
+
+    /**
+     * 批量报价：一次请求查询多个商品，只付出一次远程调用的延迟。
+     * 返回值与products一一对应，格式与getPriceEnum相同
+     */
+    public List<String> getPricesEnum(Collection<String> products){
+        delay();
+        List<String> quotes = new ArrayList<>(products.size());
+        for (String product : products) {
+            Discount.Code code = randomCode();
+            quotes.add(QuoteCodec.format(name,randomPrice(product),code));
+        }
+        return quotes;
+    }
+
+    /**
+     * 与getPriceEnum相同的报价，直接以二进制格式写入调用方提供的缓冲区，
+     * 不产生中间字符串，用Quote.decode读取。价格同样舍入到分。
+     * 包装其他商店的子类必须覆盖这个方法，否则会用自己的名字计算价格
+     */
+    public void getPriceEnum(String product, ByteBuffer out){
+        double price = calculatePrice(product);
+        Discount.Code code = randomCode();
+        QuoteCodec.encode(name,price,code,out);
     }
 
 
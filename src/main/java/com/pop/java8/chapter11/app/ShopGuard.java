@@ -0,0 +1,118 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 19:30
+ *
+ * 每家商店一个熔断器和一个舱壁（bulkhead）。
+ *
+ * 一家商店出问题之后，findPricesAys还是会不停地给它派发任务，这些任务占着执行器的线程，
+ * 健康的商店反而分不到线程。ShopGuard包在supplyAsync外面：
+ *  熔断器打开时直接返回失败的Future，不提交任务
+ *  同一家商店正在执行的调用数达到MAX_CONCURRENT时，同样直接失败
+ *  执行时间超过SLOW_CALL的调用即使成功也按失败计入熔断器
+ * 结果按放行时熔断器的代报告，熔断器状态变化之后才返回的结果不会再影响它。
+ */
+public class ShopGuard {
+
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_MILLIS = 10_000;
+    static final int MAX_CONCURRENT = 10;
+    static final long SLOW_CALL_MILLIS = 5_000;
+
+    private static final ConcurrentHashMap<String,ShopGuard> guards = new ConcurrentHashMap<>();
+
+    private final String shopName;
+    private final CircuitBreaker breaker;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final long slowCallNanos;
+
+    public ShopGuard(String shopName, CircuitBreaker breaker, int maxConcurrent, long slowCall, TimeUnit unit) {
+        this.shopName = shopName;
+        this.breaker = breaker;
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.slowCallNanos = unit.toNanos(slowCall);
+    }
+
+    /**
+     * 按商店名称共享的ShopGuard
+     */
+    public static ShopGuard of(Shop shop){
+        return guards.computeIfAbsent(shop.getName(), name -> new ShopGuard(name,
+                new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS, TimeUnit.MILLISECONDS),
+                MAX_CONCURRENT, SLOW_CALL_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 与CompletableFuture.supplyAsync相同，只是先经过熔断器和舱壁
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor){
+        if(!bulkhead.tryAcquire()){
+            return failed(shopName + " has too many calls in flight");
+        }
+        long permit = breaker.tryAcquire();
+        if(permit == CircuitBreaker.REJECTED){
+            bulkhead.release();
+            return failed(shopName + " circuit is open");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(supplier, future, permit));
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            breaker.onFailure(permit);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * 许可在任务真正结束时才归还：调用方取消Future并不会停止正在执行的supplier，
+     * 提前归还会让舱壁放进超过maxConcurrent个调用。
+     * 耗时从任务开始执行时算起，在执行器队列里等待的时间不算作商店慢
+     */
+    private <T> void run(Supplier<T> supplier, CompletableFuture<T> future, long permit){
+        try {
+            if(future.isDone()){
+                breaker.onIgnored(permit);//排队时已经被取消，没有调用商店
+                return;
+            }
+            long start = System.nanoTime();
+            T value;
+            try {
+                value = supplier.get();
+            } catch (Throwable e) {
+                breaker.onFailure(permit);
+                future.completeExceptionally(e);
+                return;
+            }
+            if(System.nanoTime() - start > slowCallNanos){
+                breaker.onFailure(permit);
+            }else{
+                breaker.onSuccess(permit);
+            }
+            future.complete(value);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(String message){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new ShopUnavailableException(message));
+        return future;
+    }
+
+    public CircuitBreaker.State getState(){
+        return breaker.getState();
+    }
+
+    public int getInFlight(){
+        return maxConcurrent - bulkhead.availablePermits();
+    }
+}
@@ -0,0 +1,29 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 21:05
+ *
+ * 一家商店对一批商品的报价，与查询时的商品顺序一一对应
+ */
+public class ShopQuotes {
+
+    private final String shopName;
+    private final List<Quote> quotes;
+
+    public ShopQuotes(String shopName, List<Quote> quotes) {
+        this.shopName = shopName;
+        this.quotes = Collections.unmodifiableList(quotes);
+    }
+
+    public String getShopName() {
+        return shopName;
+    }
+
+    public List<Quote> getQuotes() {
+        return quotes;
+    }
+}
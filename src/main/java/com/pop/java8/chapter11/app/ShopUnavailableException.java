@@ -0,0 +1,21 @@
+package com.pop.java8.chapter11.app;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 19:10
+ *
+ * 商店的熔断器处于打开状态，或者并发调用数已经达到上限时，直接抛出这个异常，
+ * 不再占用执行器的线程
+ */
+public class ShopUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ShopUnavailableException(String message) {
+        super(message);
+    }
+
+    public ShopUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
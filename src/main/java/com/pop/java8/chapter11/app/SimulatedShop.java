@@ -0,0 +1,119 @@
+package com.pop.java8.chapter11.app;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 11:15
+ *
+ * 可配置的模拟商店，用于可重复的性能测试。
+ *
+ * Shop共用一个没有种子的Random，延迟固定为1秒，每次测试的结果都不一样。
+ * SimulatedShop的延迟从指定的LatencyDistribution中采样，价格、折扣码和故障
+ * 都来自以种子初始化的Random，并且可以按failureRate注入失败。
+ *
+ * 多个线程共用一个带种子的Random时，谁先取到哪个随机数取决于线程调度，结果照样不可重复。
+ * 所以每次调用按商店的种子和调用序号派生一个自己的Random：第n次调用的延迟、价格、
+ * 折扣码和是否失败只由种子和n决定。
+ * getPriceAsync等异步方法经过Shop.submitPrice调用这里的getPrice，同样是模拟的。
+ */
+public class SimulatedShop extends Shop {
+
+    private static final Discount.Code[] CODES = Discount.Code.values();
+
+    private final LatencyDistribution latency;
+    private final double failureRate;
+    private final long seed;
+    private final AtomicLong calls = new AtomicLong();
+
+    public SimulatedShop(String name, LatencyDistribution latency, double failureRate, long seed) {
+        super(name);
+        this.latency = latency;
+        this.failureRate = failureRate;
+        this.seed = seed;
+    }
+
+    /**
+     * 创建count家模拟商店，第i家的种子由seed和i决定，同样的参数总是得到同样的商店
+     */
+    public static List<Shop> create(int count, LatencyDistribution latency, double failureRate, long seed){
+        return IntStream.range(0, count)
+                .mapToObj(i -> new SimulatedShop("SimShop" + i, latency, failureRate,
+                        seed * 31 + i))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 第n次调用使用的Random，种子用SplitMix64的混合函数打散，相邻的调用序号不会得到相近的种子
+     */
+    private Random nextRandom(){
+        long z = seed + calls.getAndIncrement() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    /**
+     * 按分布休眠，并按failureRate抛出异常
+     */
+    private void simulateCall(Random random){
+        long millis = latency.sample(random);
+        boolean fail = random.nextDouble() < failureRate;
+        try {
+            Thread.sleep(Math.max(millis, 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(getName() + " interrupted", e);
+        }
+        if(fail){
+            throw new IllegalStateException(getName() + " failed (simulated)");
+        }
+    }
+
+    private static double price(String product, Random random){
+        return random.nextDouble() * product.charAt(0) + product.charAt(1);
+    }
+
+    private static Discount.Code code(Random random){
+        return CODES[random.nextInt(CODES.length)];
+    }
+
+    @Override
+    public double getPrice(String product) {
+        Random random = nextRandom();
+        simulateCall(random);
+        return price(product, random);
+    }
+
+    @Override
+    public String getPriceEnum(String product) {
+        Random random = nextRandom();
+        simulateCall(random);
+        return QuoteCodec.format(getName(), price(product, random), code(random));
+    }
+
+    @Override
+    public void getPriceEnum(String product, ByteBuffer out) {
+        Random random = nextRandom();
+        simulateCall(random);
+        QuoteCodec.encode(getName(), price(product, random), code(random), out);
+    }
+
+    @Override
+    public List<String> getPricesEnum(Collection<String> products) {
+        Random random = nextRandom();
+        simulateCall(random);
+        List<String> quotes = new ArrayList<>(products.size());
+        for (String product : products) {
+            quotes.add(QuoteCodec.format(getName(), price(product, random), code(random)));
+        }
+        return quotes;
+    }
+}
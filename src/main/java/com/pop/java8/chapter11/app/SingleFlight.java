@@ -0,0 +1,89 @@
+package com.pop.java8.chapter11.app;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 16:05
+ *
+ * 合并同一个key上同时发生的请求（single-flight）。
+ *
+ * 抢购时几百个调用方会在同一时刻查询同一个商品，每个调用都会把请求扇出到所有商店。
+ * 这里让同一个key的并发调用共享同一个正在执行的请求：第一个调用方真正发起请求，
+ * 后来的调用方等待同一个结果。请求完成后立刻移除这个key，
+ * 之后的调用会重新发起请求，所以这里不缓存结果，也就不存在数据过期的问题。
+ *
+ * 共享的Future留在inFlight里，每个调用方拿到的是依赖它的一个副本：
+ * 某个调用方cancel或者complete自己的副本，不会影响其他调用方，也不会影响后来加入的调用方。
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 如果key上已经有正在执行的请求，等待它的结果，否则调用loader发起一个新的请求。
+     * 返回的Future只属于这一个调用方。loader抛出异常或者返回null时，这一次请求失败，key立即释放
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader){
+        calls.increment();
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if(existing != null){
+            shared.increment();
+            return copy(existing);
+        }
+        //只有抢到位置的调用方才发起请求，完成时先释放key，再通知等待者
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+            if(source == null){
+                throw new NullPointerException("loader returned null for " + key);
+            }
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+            return copy(promise);
+        }
+        source.whenComplete((v, e) -> {
+            inFlight.remove(key, promise);
+            if(e != null){
+                promise.completeExceptionally(e);
+            }else{
+                promise.complete(v);
+            }
+        });
+        return copy(promise);
+    }
+
+    private static <V> CompletableFuture<V> copy(CompletableFuture<V> promise){
+        return promise.thenApply(Function.identity());
+    }
+
+    public int getInFlight(){
+        return inFlight.size();
+    }
+
+    public long getCalls(){
+        return calls.sum();
+    }
+
+    /**
+     * 搭上别人的请求、没有真正发起调用的次数
+     */
+    public long getShared(){
+        return shared.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{inFlight=" + getInFlight() + ", calls=" + getCalls() + ", shared=" + getShared() + '}';
+    }
+}
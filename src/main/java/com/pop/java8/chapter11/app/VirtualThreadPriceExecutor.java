@@ -0,0 +1,74 @@
+package com.pop.java8.chapter11.app;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 13:10
+ *
+ * 每个任务一个虚拟线程的执行器（JDK 21+）。
+ *
+ * Shop.calculatePrice和Discount.apply都会调用阻塞的Shop.delay()，线程池的大小
+ * 直接决定了能同时查询多少家商店。虚拟线程在阻塞时会让出底层的载体线程，所以不再需要
+ * 估算线程池的大小。项目仍然按Java 8编译，这里通过反射调用
+ * Executors.newVirtualThreadPerTaskExecutor()，运行时不支持时由调用方回退到线程池。
+ */
+public class VirtualThreadPriceExecutor implements PriceExecutor {
+
+    private final ExecutorService delegate;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private VirtualThreadPriceExecutor(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 运行时支持虚拟线程时返回对应的执行器，否则返回null
+     */
+    public static VirtualThreadPriceExecutor createIfSupported(){
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new VirtualThreadPriceExecutor((ExecutorService) factory.invoke(null));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;//Java 21之前没有这个方法
+        } catch (InvocationTargetException e) {
+            return null;//JDK 19/20 没有开启--enable-preview时会抛出UnsupportedOperationException
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        active.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            active.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 每个任务都有自己的线程，不存在排队，poolSize就是正在运行的任务数
+     */
+    @Override
+    public ExecutorStats getStats() {
+        int running = active.get();
+        return new ExecutorStats(running, running, 0, completed.get(), rejected.get());
+    }
+}
@@ -1,7 +1,5 @@
 package com.pop.java8.chapter7;
 
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
 import java.util.stream.LongStream;
 
@@ -76,7 +74,7 @@ public class BrankMergeFramework {
 
         private long computeSequentially(){
             long sum = 0;
-            for (int i=start;i>end;i++){
+            for (int i=start;i<end;i++){
                 sum+=numbers[i];
             }
             return sum;
@@ -88,9 +86,22 @@ public class BrankMergeFramework {
      * ForkJoinSumCalculator的构造函数：
      */
     public static long forkJoinSum(long n){
+        //不再分配数组，n=10^9时数组要占8GB；线程池也不再每次new一个，而是复用ForkJoinPools中的共享池
+        return ParallelReducer.sumRange(ForkJoinPools.get(POOL), n);
+    }
+
+    /**
+     * forkJoinSum使用的池的名字，并行度可以通过 -Dforkjoin.pool.forkJoinSum.parallelism 配置
+     */
+    public static final String POOL = "forkJoinSum";
+
+    /**
+     * 原来的版本：先生成数组，再交给ForkJoinSumCalculator
+     */
+    public static long forkJoinArraySum(long n){
         long[] numbers = LongStream.rangeClosed(1,n).toArray();
-        ForkJoinTask<Long> task = new BrankMergeFramework.ForkJoinSumCalculator(numbers);
-        return new ForkJoinPool().invoke(task);
+        //同样的拆分方式，推广成了ParallelReducer，阈值按数组长度和并行度计算
+        return ParallelReducer.reduce(ForkJoinPools.get(POOL), numbers, 0, numbers.length, 0L, Long::sum);
 
         /**
          * 这里用了一个LongStream来生成包含前n个自然数的数组，然后创建一个ForkJoinTask
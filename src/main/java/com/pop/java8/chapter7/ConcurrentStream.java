@@ -48,6 +48,16 @@ public class ConcurrentStream {
      * （也就是求和）并行运行 --- 对顺序流调用parallel方法
      */
     public static long parallelSum(long n){
+        //iterate无法均匀拆分，而且会装箱；换成可以从中间拆分的等差数列，见RangeSpliterators
+        return RangeSpliterators.arithmetic(1L,1L,n)
+                .parallel()//转化为并行流
+                .reduce(0L,Long::sum);
+    }
+
+    /**
+     * 书中原来的写法，保留下来和parallelSum对比，见ParallelSumBenchmark
+     */
+    public static long parallelIterateSum(long n){
         return Stream.iterate(1L,i->i+1)
                 .limit(n)
                 .parallel()//转化为并行流
@@ -58,6 +68,9 @@ public class ConcurrentStream {
      * 测试性能
      *
      * 你的测试方法，应用10次，查看时间
+     *
+     * 没有预热，计时区间里还有打印，只能粗略比较；
+     * 可信的数字见src/jmh/java下的SequentialSumBenchmark和ParallelSumBenchmark
      */
     public static long measureSumPerf(Function<Long,Long> adder, long n){
         long fastest = Long.MAX_VALUE;
@@ -0,0 +1,133 @@
+package com.pop.java8.chapter7;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 20:10
+ *
+ * 按名字共享的ForkJoinPool。
+ *
+ * 原来的forkJoinSum每次调用都new一个ForkJoinPool，而且从来不关闭，调用多少次就多出多少组
+ * 工作线程。正如书中所说，一般把它实例化一次保存在静态字段中。这里按名字保存线程池，
+ * 同一个名字总是返回同一个实例，工作线程的名字带上池的名字，方便在线程转储中辨认。
+ *
+ * 并行度通过系统属性配置，例如 -Dforkjoin.pool.reduce.parallelism=4，
+ * 没有配置时使用Runtime.availableProcessors()。
+ */
+public final class ForkJoinPools {
+
+    /**
+     * ParallelReducer和forkJoinSum默认使用的池
+     */
+    public static final String SHARED = "reduce";
+
+    private static final Map<String, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private ForkJoinPools() {
+    }
+
+    public static ForkJoinPool shared(){
+        return get(SHARED);
+    }
+
+    /**
+     * 返回指定名字的池，第一次使用时按配置的并行度创建
+     */
+    public static ForkJoinPool get(String name){
+        return pools.computeIfAbsent(name, ForkJoinPools::create);
+    }
+
+    private static ForkJoinPool create(String name){
+        int parallelism = Integer.getInteger("forkjoin.pool." + name + ".parallelism",
+                Runtime.getRuntime().availableProcessors());
+        return new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 指定名字的池当前的统计，池还没有创建时返回null
+     */
+    public static Stats stats(String name){
+        ForkJoinPool pool = pools.get(name);
+        return pool == null ? null : new Stats(name, pool);
+    }
+
+    /**
+     * 关闭并移除指定名字的池，之后再get会创建一个新的
+     */
+    public static void shutdown(String name){
+        ForkJoinPool pool = pools.remove(name);
+        if(pool != null){
+            pool.shutdown();
+        }
+    }
+
+    public static class Stats {
+
+        private final String name;
+        private final int parallelism;//目标并行度
+        private final int poolSize;//已经启动的工作线程数
+        private final int active;//正在窃取或执行任务的线程数
+        private final long steals;//从其它线程队列中窃取的任务数，近似值
+        private final long queuedTasks;//工作线程队列中的任务数，近似值
+        private final int queuedSubmissions;//从外部提交、还没有开始执行的任务数
+
+        Stats(String name, ForkJoinPool pool) {
+            this.name = name;
+            this.parallelism = pool.getParallelism();
+            this.poolSize = pool.getPoolSize();
+            this.active = pool.getActiveThreadCount();
+            this.steals = pool.getStealCount();
+            this.queuedTasks = pool.getQueuedTaskCount();
+            this.queuedSubmissions = pool.getQueuedSubmissionCount();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public long getSteals() {
+            return steals;
+        }
+
+        public long getQueuedTasks() {
+            return queuedTasks;
+        }
+
+        public int getQueuedSubmissions() {
+            return queuedSubmissions;
+        }
+
+        @Override
+        public String toString() {
+            return "ForkJoinPools.Stats{" +
+                    "name=" + name +
+                    ", parallelism=" + parallelism +
+                    ", poolSize=" + poolSize +
+                    ", active=" + active +
+                    ", steals=" + steals +
+                    ", queuedTasks=" + queuedTasks +
+                    ", queuedSubmissions=" + queuedSubmissions +
+                    '}';
+        }
+    }
+}
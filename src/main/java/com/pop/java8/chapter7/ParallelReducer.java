@@ -0,0 +1,431 @@
+package com.pop.java8.chapter7;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 19:30
+ *
+ * 通用的分支/合并归约。
+ *
+ * BrankMergeFramework.ForkJoinSumCalculator只能对long[]求和，而且阈值固定为10_000。
+ * 这里把同样的拆分逻辑推广到int、long、double和对象数组，归约操作和单位元由调用方传入。
+ * 操作必须满足结合律，(a op b) op c == a op (b op c)，单位元满足 identity op x == x，
+ * 合并时总是左半部分在前，所以不要求交换律。
+ *
+ * 阈值不再写死，而是按数组长度和线程池的并行度计算：让每个工作线程大约分到
+ * LEAVES_PER_THREAD个叶子任务，线程之间可以互相窃取来平衡负载，
+ * 同时每个叶子至少有MIN_LEAF个元素，避免任务本身的开销超过计算量。
+ * 整个数组都不超过阈值时直接在调用线程上顺序计算，不经过线程池。
+ *
+ * 注意double的加法并不严格满足结合律，并行求和的结果与顺序求和可能在最后几位上不同。
+ *
+ * reduceRange不需要输入数组，直接对下标区间[from, to)上的f(i)做归约，
+ * 例如对1到n求和时不必先用LongStream.rangeClosed(1,n).toArray()分配8n字节的数组。
+ * 没有指定线程池的方法都使用ForkJoinPools.shared()。
+ */
+public final class ParallelReducer {
+
+    static final int MIN_LEAF = 1 << 12;
+    static final int LEAVES_PER_THREAD = 4;
+
+    private ParallelReducer() {
+    }
+
+    /**
+     * 按数组长度和并行度计算不再拆分的子数组大小
+     */
+    public static int threshold(int length, int parallelism){
+        return Math.max(MIN_LEAF, length / (Math.max(1, parallelism) * LEAVES_PER_THREAD));
+    }
+
+    // ---------------------------------------------------------------- int
+
+    public static int reduce(int[] array, int identity, IntBinaryOperator op){
+        return reduce(ForkJoinPools.shared(), array, 0, array.length, identity, op);
+    }
+
+    public static int reduce(ForkJoinPool pool, int[] array, int from, int to, int identity, IntBinaryOperator op){
+        checkRange(array.length, from, to);
+        int threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return IntReduceTask.sequential(array, from, to, identity, op);
+        }
+        return pool.invoke(new IntReduceTask(array, from, to, identity, op, threshold));
+    }
+
+    // ---------------------------------------------------------------- long
+
+    public static long reduce(long[] array, long identity, LongBinaryOperator op){
+        return reduce(ForkJoinPools.shared(), array, 0, array.length, identity, op);
+    }
+
+    public static long reduce(ForkJoinPool pool, long[] array, int from, int to, long identity, LongBinaryOperator op){
+        checkRange(array.length, from, to);
+        int threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return LongReduceTask.sequential(array, from, to, identity, op);
+        }
+        return pool.invoke(new LongReduceTask(array, from, to, identity, op, threshold));
+    }
+
+    public static long sum(long[] array){
+        return reduce(array, 0L, Long::sum);
+    }
+
+    // ---------------------------------------------------------------- double
+
+    public static double reduce(double[] array, double identity, DoubleBinaryOperator op){
+        return reduce(ForkJoinPools.shared(), array, 0, array.length, identity, op);
+    }
+
+    public static double reduce(ForkJoinPool pool, double[] array, int from, int to, double identity,
+                                DoubleBinaryOperator op){
+        checkRange(array.length, from, to);
+        int threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return DoubleReduceTask.sequential(array, from, to, identity, op);
+        }
+        return pool.invoke(new DoubleReduceTask(array, from, to, identity, op, threshold));
+    }
+
+    public static double sum(double[] array){
+        return reduce(array, 0.0, Double::sum);
+    }
+
+    // ---------------------------------------------------------------- Object
+
+    public static <T> T reduce(T[] array, T identity, BinaryOperator<T> op){
+        return reduce(ForkJoinPools.shared(), array, 0, array.length, identity, op);
+    }
+
+    public static <T> T reduce(ForkJoinPool pool, T[] array, int from, int to, T identity, BinaryOperator<T> op){
+        checkRange(array.length, from, to);
+        int threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return ObjectReduceTask.sequential(array, from, to, identity, op);
+        }
+        return pool.invoke(new ObjectReduceTask<>(array, from, to, identity, op, threshold));
+    }
+
+    // ---------------------------------------------------------------- 下标区间
+
+    public static long threshold(long length, int parallelism){
+        return Math.max(MIN_LEAF, length / (Math.max(1, parallelism) * LEAVES_PER_THREAD));
+    }
+
+    /**
+     * 对[from, to)中的每个i计算mapper(i)，再用op归约
+     */
+    public static long reduceRange(long from, long to, long identity, LongUnaryOperator mapper,
+                                   LongBinaryOperator op){
+        return reduceRange(ForkJoinPools.shared(), from, to, identity, mapper, op);
+    }
+
+    public static long reduceRange(ForkJoinPool pool, long from, long to, long identity, LongUnaryOperator mapper,
+                                   LongBinaryOperator op){
+        if(from > to){
+            throw new IllegalArgumentException("from " + from + " > to " + to);
+        }
+        long threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return LongRangeTask.sequential(from, to, identity, mapper, op);
+        }
+        return pool.invoke(new LongRangeTask(from, to, identity, mapper, op, threshold));
+    }
+
+    /**
+     * 与reduceRange相同，mapper和op换成double版本。单独起名字是因为两组重载只有函数式接口的类型不同，
+     * 传入lambda时编译器无法区分
+     */
+    public static double reduceRangeToDouble(long from, long to, double identity, LongToDoubleFunction mapper,
+                                             DoubleBinaryOperator op){
+        return reduceRangeToDouble(ForkJoinPools.shared(), from, to, identity, mapper, op);
+    }
+
+    public static double reduceRangeToDouble(ForkJoinPool pool, long from, long to, double identity,
+                                             LongToDoubleFunction mapper, DoubleBinaryOperator op){
+        if(from > to){
+            throw new IllegalArgumentException("from " + from + " > to " + to);
+        }
+        long threshold = threshold(to - from, pool.getParallelism());
+        if(to - from <= threshold){
+            return DoubleRangeTask.sequential(from, to, identity, mapper, op);
+        }
+        return pool.invoke(new DoubleRangeTask(from, to, identity, mapper, op, threshold));
+    }
+
+    /**
+     * 对闭区间[1, n]求和，不分配数组
+     */
+    public static long sumRange(ForkJoinPool pool, long n){
+        if(n == Long.MAX_VALUE){
+            throw new IllegalArgumentException("n must be less than Long.MAX_VALUE");
+        }
+        return reduceRange(pool, 1, n + 1, 0L, LongUnaryOperator.identity(), Long::sum);
+    }
+
+    private static void checkRange(int length, int from, int to){
+        if(from < 0 || to > length || from > to){
+            throw new ArrayIndexOutOfBoundsException("range [" + from + ", " + to + ") out of bounds for length " + length);
+        }
+    }
+
+    /**
+     * 下面四个任务的结构与ForkJoinSumCalculator相同：左半部分fork出去，
+     * 右半部分在当前线程继续拆分，最后按左、右的顺序合并。
+     * 每种类型单独写一个任务，叶子里的循环直接处理原始类型，不会装箱
+     */
+    static final class IntReduceTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+        private final int[] array;
+        private final int start;
+        private final int end;
+        private final int identity;
+        private final IntBinaryOperator op;
+        private final int threshold;
+
+        IntReduceTask(int[] array, int start, int end, int identity, IntBinaryOperator op, int threshold) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Integer compute() {
+            if(end - start <= threshold){
+                return sequential(array, start, end, identity, op);
+            }
+            int mid = (start + end) >>> 1;
+            IntReduceTask left = new IntReduceTask(array, start, mid, identity, op, threshold);
+            left.fork();
+            int right = new IntReduceTask(array, mid, end, identity, op, threshold).compute();
+            return op.applyAsInt(left.join(), right);
+        }
+
+        static int sequential(int[] array, int start, int end, int identity, IntBinaryOperator op){
+            int result = identity;
+            for (int i = start; i < end; i++) {
+                result = op.applyAsInt(result, array[i]);
+            }
+            return result;
+        }
+    }
+
+    static final class LongReduceTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+        private final long[] array;
+        private final int start;
+        private final int end;
+        private final long identity;
+        private final LongBinaryOperator op;
+        private final int threshold;
+
+        LongReduceTask(long[] array, int start, int end, long identity, LongBinaryOperator op, int threshold) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Long compute() {
+            if(end - start <= threshold){
+                return sequential(array, start, end, identity, op);
+            }
+            int mid = (start + end) >>> 1;
+            LongReduceTask left = new LongReduceTask(array, start, mid, identity, op, threshold);
+            left.fork();
+            long right = new LongReduceTask(array, mid, end, identity, op, threshold).compute();
+            return op.applyAsLong(left.join(), right);
+        }
+
+        static long sequential(long[] array, int start, int end, long identity, LongBinaryOperator op){
+            long result = identity;
+            for (int i = start; i < end; i++) {
+                result = op.applyAsLong(result, array[i]);
+            }
+            return result;
+        }
+    }
+
+    static final class DoubleReduceTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+        private final double[] array;
+        private final int start;
+        private final int end;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+        private final int threshold;
+
+        DoubleReduceTask(double[] array, int start, int end, double identity, DoubleBinaryOperator op, int threshold) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Double compute() {
+            if(end - start <= threshold){
+                return sequential(array, start, end, identity, op);
+            }
+            int mid = (start + end) >>> 1;
+            DoubleReduceTask left = new DoubleReduceTask(array, start, mid, identity, op, threshold);
+            left.fork();
+            double right = new DoubleReduceTask(array, mid, end, identity, op, threshold).compute();
+            return op.applyAsDouble(left.join(), right);
+        }
+
+        static double sequential(double[] array, int start, int end, double identity, DoubleBinaryOperator op){
+            double result = identity;
+            for (int i = start; i < end; i++) {
+                result = op.applyAsDouble(result, array[i]);
+            }
+            return result;
+        }
+    }
+
+    static final class ObjectReduceTask<T> extends RecursiveTask<T> {
+
+        private static final long serialVersionUID = 1L;
+        private final T[] array;
+        private final int start;
+        private final int end;
+        private final T identity;
+        private final BinaryOperator<T> op;
+        private final int threshold;
+
+        ObjectReduceTask(T[] array, int start, int end, T identity, BinaryOperator<T> op, int threshold) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected T compute() {
+            if(end - start <= threshold){
+                return sequential(array, start, end, identity, op);
+            }
+            int mid = (start + end) >>> 1;
+            ObjectReduceTask<T> left = new ObjectReduceTask<>(array, start, mid, identity, op, threshold);
+            left.fork();
+            T right = new ObjectReduceTask<>(array, mid, end, identity, op, threshold).compute();
+            return op.apply(left.join(), right);
+        }
+
+        static <T> T sequential(T[] array, int start, int end, T identity, BinaryOperator<T> op){
+            T result = identity;
+            for (int i = start; i < end; i++) {
+                result = op.apply(result, array[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 和上面的任务一样拆分，只是拆分的是下标区间，叶子里现算每个元素
+     */
+    static final class LongRangeTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+        private final long start;
+        private final long end;
+        private final long identity;
+        private final LongUnaryOperator mapper;
+        private final LongBinaryOperator op;
+        private final long threshold;
+
+        LongRangeTask(long start, long end, long identity, LongUnaryOperator mapper, LongBinaryOperator op,
+                      long threshold) {
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.mapper = mapper;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Long compute() {
+            if(end - start <= threshold){
+                return sequential(start, end, identity, mapper, op);
+            }
+            long mid = start + (end - start) / 2;
+            LongRangeTask left = new LongRangeTask(start, mid, identity, mapper, op, threshold);
+            left.fork();
+            long right = new LongRangeTask(mid, end, identity, mapper, op, threshold).compute();
+            return op.applyAsLong(left.join(), right);
+        }
+
+        static long sequential(long start, long end, long identity, LongUnaryOperator mapper, LongBinaryOperator op){
+            long result = identity;
+            for (long i = start; i < end; i++) {
+                result = op.applyAsLong(result, mapper.applyAsLong(i));
+            }
+            return result;
+        }
+    }
+
+    static final class DoubleRangeTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+        private final long start;
+        private final long end;
+        private final double identity;
+        private final LongToDoubleFunction mapper;
+        private final DoubleBinaryOperator op;
+        private final long threshold;
+
+        DoubleRangeTask(long start, long end, double identity, LongToDoubleFunction mapper, DoubleBinaryOperator op,
+                        long threshold) {
+            this.start = start;
+            this.end = end;
+            this.identity = identity;
+            this.mapper = mapper;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Double compute() {
+            if(end - start <= threshold){
+                return sequential(start, end, identity, mapper, op);
+            }
+            long mid = start + (end - start) / 2;
+            DoubleRangeTask left = new DoubleRangeTask(start, mid, identity, mapper, op, threshold);
+            left.fork();
+            double right = new DoubleRangeTask(mid, end, identity, mapper, op, threshold).compute();
+            return op.applyAsDouble(left.join(), right);
+        }
+
+        static double sequential(long start, long end, double identity, LongToDoubleFunction mapper,
+                                 DoubleBinaryOperator op){
+            double result = identity;
+            for (long i = start; i < end; i++) {
+                result = op.applyAsDouble(result, mapper.applyAsDouble(i));
+            }
+            return result;
+        }
+    }
+}
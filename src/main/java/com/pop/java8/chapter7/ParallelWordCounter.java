@@ -0,0 +1,212 @@
+package com.pop.java8.chapter7;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 21:50
+ *
+ * 并行单词计数。
+ *
+ * SpliteratorDemo中的做法是把String变成Stream<Character>，每个字符都装箱，WordCounter
+ * 每遇到一个单词边界就创建一个新对象，对几个GB的日志根本跑不动。这里沿用
+ * WordCounterSpliterator的思路：只在空白字符处拆分，保证单词不会被切成两半，
+ * 但拆分只记录区间的起止位置，不复制数据；每个叶子任务用一个long计数器顺序地数，
+ * 最后把各个区间的计数加起来。
+ *
+ * 支持两种数据源：
+ *  CharSequence  空白字符按Character.isWhitespace判断，与countWordsInteratively一致
+ *  文件          用内存映射按字节读取，每段最多1GB，可以处理超过2GB的文件。
+ *                只把ASCII空白字符当作分隔符，适用于UTF-8、ISO-8859-1等兼容ASCII的编码
+ */
+public final class ParallelWordCounter {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final boolean[] ASCII_WHITESPACE = new boolean[256];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_WHITESPACE[c] = Character.isWhitespace((char) c);
+        }
+    }
+
+    private ParallelWordCounter() {
+    }
+
+    public static long count(CharSequence text){
+        return count(ForkJoinPools.shared(), text);
+    }
+
+    public static long count(ForkJoinPool pool, CharSequence text){
+        return count(pool, new Chars(text));
+    }
+
+    public static long count(Path file) throws IOException {
+        return count(ForkJoinPools.shared(), file);
+    }
+
+    public static long count(ForkJoinPool pool, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+            }
+            //关闭通道之后映射仍然有效，直到映射区域被GC回收
+            return count(pool, new MappedBytes(segments, size));
+        }
+    }
+
+    private static long count(ForkJoinPool pool, Text text){
+        long threshold = ParallelReducer.threshold(text.length(), pool.getParallelism());
+        if(text.length() <= threshold){
+            return text.countWords(0, text.length());
+        }
+        return pool.invoke(new CountTask(text, 0, text.length(), threshold));
+    }
+
+    /**
+     * 两种数据源的共同操作，拆分时按位置判断空白，叶子里的循环由各自实现
+     */
+    private interface Text {
+
+        long length();
+
+        boolean isWhitespace(long position);
+
+        /**
+         * 数[start, end)中的单词，start要么是0，要么是一个空白字符的位置
+         */
+        long countWords(long start, long end);
+    }
+
+    private static final class Chars implements Text {
+
+        private final CharSequence text;
+
+        Chars(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public long length() {
+            return text.length();
+        }
+
+        @Override
+        public boolean isWhitespace(long position) {
+            return Character.isWhitespace(text.charAt((int) position));
+        }
+
+        @Override
+        public long countWords(long start, long end) {
+            long words = 0;
+            boolean lastSpace = true;
+            for (int i = (int) start; i < end; i++) {
+                boolean space = Character.isWhitespace(text.charAt(i));
+                if(lastSpace && !space){
+                    words++;
+                }
+                lastSpace = space;
+            }
+            return words;
+        }
+    }
+
+    private static final class MappedBytes implements Text {
+
+        private final MappedByteBuffer[] segments;
+        private final long length;
+
+        MappedBytes(MappedByteBuffer[] segments, long length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isWhitespace(long position) {
+            return ASCII_WHITESPACE[segments[(int) (position >>> SEGMENT_SHIFT)]
+                    .get((int) (position & (SEGMENT_SIZE - 1))) & 0xFF];
+        }
+
+        @Override
+        public long countWords(long start, long end) {
+            long words = 0;
+            boolean lastSpace = true;
+            long position = start;
+            while (position < end){
+                //区间可能跨过两个映射段，每段内部用int下标直接读
+                MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                int from = (int) (position & (SEGMENT_SIZE - 1));
+                int to = (int) Math.min(SEGMENT_SIZE, from + (end - position));
+                for (int i = from; i < to; i++) {
+                    boolean space = ASCII_WHITESPACE[segment.get(i) & 0xFF];
+                    if(lastSpace && !space){
+                        words++;
+                    }
+                    lastSpace = space;
+                }
+                position += to - from;
+            }
+            return words;
+        }
+    }
+
+    /**
+     * 和ForkJoinSumCalculator一样拆分，只是拆分点从中间移到最近的空白字符上，
+     * 右半部分总是以空白字符开始，左半部分的单词不会被切断
+     */
+    private static final class CountTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+        private final Text text;
+        private final long start;
+        private final long end;
+        private final long threshold;
+
+        CountTask(Text text, long start, long end, long threshold) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Long compute() {
+            long split = end - start <= threshold ? -1 : boundary(start + (end - start) / 2);
+            if(split < 0){
+                return text.countWords(start, end);
+            }
+            CountTask left = new CountTask(text, start, split, threshold);
+            left.fork();
+            long right = new CountTask(text, split, end, threshold).compute();
+            return left.join() + right;
+        }
+
+        /**
+         * 从mid开始向后找空白字符，找不到再向前找；整个区间都是一个词时返回-1，不再拆分
+         */
+        private long boundary(long mid){
+            for (long i = mid; i < end; i++) {
+                if(text.isWhitespace(i)) return i;
+            }
+            for (long i = mid - 1; i > start; i--) {
+                if(text.isWhitespace(i)) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.pop.java8.chapter7;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 21:10
+ *
+ * 可以均匀拆分的原始类型数据源。
+ *
+ * Stream.iterate(1L,i->i+1)必须先算出前一个元素才能得到下一个，只能从头部一块一块地切下来，
+ * 而且每个元素都装箱成Long，所以parallelSum反而比顺序版本慢。但等差数列的第i项可以直接算出来：
+ * first + i * step，更一般地，只要生成函数有通项公式f(i)，就不需要依赖前一项。
+ * 这里的Spliterator只保存下标区间[index, fence)，trySplit从中间一分为二，
+ * 两半的大小都是精确的（SIZED | SUBSIZED），并行流可以据此均衡地分配任务，元素也不会装箱。
+ */
+public final class RangeSpliterators {
+
+    private static final int ORDERED_SIZED = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+    private RangeSpliterators() {
+    }
+
+    /**
+     * 等差数列 first, first+step, ..., 共count项
+     */
+    public static LongStream arithmetic(long first, long step, long count){
+        return StreamSupport.longStream(new LongProgression(first, step, 0, checkCount(count),
+                progression(first, step, count, Long.MIN_VALUE, Long.MAX_VALUE)), false);
+    }
+
+    public static IntStream arithmetic(int first, int step, int count){
+        return StreamSupport.intStream(new IntProgression(first, step, 0, checkCount(count),
+                progression(first, step, count, Integer.MIN_VALUE, Integer.MAX_VALUE)), false);
+    }
+
+    /**
+     * f(0), f(1), ..., f(count-1)，f必须是无状态的，每一项只依赖下标
+     */
+    public static LongStream generate(long count, LongUnaryOperator f){
+        return StreamSupport.longStream(new LongGenerator(f, 0, checkCount(count)), false);
+    }
+
+    public static DoubleStream generateDouble(long count, LongToDoubleFunction f){
+        return StreamSupport.doubleStream(new DoubleGenerator(f, 0, checkCount(count)), false);
+    }
+
+    private static long checkCount(long count){
+        if(count < 0){
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * 所有实现共用的下标区间，拆分只需要移动index和fence
+     */
+    abstract static class IndexRange {
+
+        long index;//下一个要处理的下标
+        final long fence;//最后一个下标之后的位置
+
+        IndexRange(long index, long fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        /**
+         * 剩余元素不止一个时把前一半[lo, mid)交给新的Spliterator：
+         * 当前区间的起点移到mid，返回原来的起点lo；否则返回-1
+         */
+        long split(){
+            long lo = index, mid = lo + ((fence - lo) >>> 1);
+            if(mid <= lo){
+                return -1;
+            }
+            index = mid;
+            return lo;
+        }
+
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        public int characteristics() {
+            return ORDERED_SIZED;
+        }
+    }
+
+    /**
+     * 步长不为0、并且最后一项没有溢出时，数列不会重复，可以声明DISTINCT；
+     * 步长为正时还是递增的，可以声明SORTED。流可以借此省掉sorted()和distinct()
+     */
+    private static int progression(long first, long step, long count, long min, long max){
+        int characteristics = ORDERED_SIZED;
+        if(step == 0 || count == 0){
+            return characteristics;
+        }
+        try {
+            long last = Math.addExact(first, Math.multiplyExact(count - 1, step));
+            if(last < min || last > max){
+                return characteristics;
+            }
+        } catch (ArithmeticException e) {
+            return characteristics;
+        }
+        characteristics |= Spliterator.DISTINCT;
+        if(step > 0){
+            characteristics |= Spliterator.SORTED;
+        }
+        return characteristics;
+    }
+
+    static final class LongProgression extends IndexRange implements Spliterator.OfLong {
+
+        private final long first;
+        private final long step;
+        private final int characteristics;
+
+        LongProgression(long first, long step, long index, long fence, int characteristics) {
+            super(index, fence);
+            this.first = first;
+            this.step = step;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public OfLong trySplit() {
+            long lo = split();
+            return lo < 0 ? null : new LongProgression(first, step, lo, index, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if(index < fence){
+                action.accept(first + index++ * step);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long i = index, end = fence;
+            index = end;
+            for (long value = first + i * step; i < end; i++, value += step) {
+                action.accept(value);
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            if((characteristics & Spliterator.SORTED) != 0){
+                return null;//自然顺序
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    static final class IntProgression extends IndexRange implements Spliterator.OfInt {
+
+        private final int first;
+        private final int step;
+        private final int characteristics;
+
+        IntProgression(int first, int step, long index, long fence, int characteristics) {
+            super(index, fence);
+            this.first = first;
+            this.step = step;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public OfInt trySplit() {
+            long lo = split();
+            return lo < 0 ? null : new IntProgression(first, step, lo, index, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if(index < fence){
+                action.accept(first + (int) index++ * step);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            int i = (int) index, end = (int) fence;
+            index = end;
+            for (int value = first + i * step; i < end; i++, value += step) {
+                action.accept(value);
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            if((characteristics & Spliterator.SORTED) != 0){
+                return null;
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    static final class LongGenerator extends IndexRange implements Spliterator.OfLong {
+
+        private final LongUnaryOperator f;
+
+        LongGenerator(LongUnaryOperator f, long index, long fence) {
+            super(index, fence);
+            this.f = f;
+        }
+
+        @Override
+        public OfLong trySplit() {
+            long lo = split();
+            return lo < 0 ? null : new LongGenerator(f, lo, index);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if(index < fence){
+                action.accept(f.applyAsLong(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long i = index, end = fence;
+            index = end;
+            for (; i < end; i++) {
+                action.accept(f.applyAsLong(i));
+            }
+        }
+    }
+
+    static final class DoubleGenerator extends IndexRange implements Spliterator.OfDouble {
+
+        private final LongToDoubleFunction f;
+
+        DoubleGenerator(LongToDoubleFunction f, long index, long fence) {
+            super(index, fence);
+            this.f = f;
+        }
+
+        @Override
+        public OfDouble trySplit() {
+            long lo = split();
+            return lo < 0 ? null : new DoubleGenerator(f, lo, index);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if(index < fence){
+                action.accept(f.applyAsDouble(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            long i = index, end = fence;
+            index = end;
+            for (; i < end; i++) {
+                action.accept(f.applyAsDouble(i));
+            }
+        }
+    }
+}
@@ -161,6 +161,12 @@ public class SpliteratorDemo {
         Spliterator<Character> spliterator = new WordCounterSpliterator(SENTENCE);
         Stream<Character> stream2 = StreamSupport.stream(spliterator,true);
         System.out.println("Found " + countWords(stream2) + " words");
+        /**
+         * 对大文本不要用Stream<Character>：每个字符都要装箱，WordCounter也会不停地创建新对象。
+         * ParallelWordCounter同样只在空白处拆分，但直接在原始数据上用long计数，
+         * 也可以对内存映射的文件计数：ParallelWordCounter.count(Paths.get("app.log"))
+         */
+        System.out.println("Found " + ParallelWordCounter.count(SENTENCE) + " words");
         /**
          * 你已经看到了Spliterator如何让你控制拆分数据结构的策略。Spliterator还有最后一
          * 个值得注意的功能，就是可以在第一次遍历、第一次拆分或第一次查询估计大小时绑定元素的数
@@ -11,9 +11,16 @@ public class WordCounterSpliterator implements Spliterator<Character> {
 
     private final String string;
     private int currentChar = 0;
+    private final int end;//拆分后只处理[currentChar, end)，不再用substring复制字符串
 
     public WordCounterSpliterator(String string) {
+        this(string, 0, string.length());
+    }
+
+    private WordCounterSpliterator(String string, int start, int end) {
         this.string = string;
+        this.currentChar = start;
+        this.end = end;
     }
 
     /**
@@ -35,8 +42,13 @@ public class WordCounterSpliterator implements Spliterator<Character> {
          * 方法。如果新的指针位置小于String的总长，且还有要遍历的Character， 则
          * tryAdvance返回true。
          */
+        //原来的写法先处理字符，再返回currentChar<string.length()，处理完最后一个字符时返回false，
+        //与tryAdvance的约定不符（处理了元素就应该返回true），而且在没有剩余字符时调用会越界
+        if(currentChar>=end){
+            return false;//没有要处理的字符了
+        }
         action.accept(string.charAt(currentChar++));//处理当前字符
-        return currentChar<string.length();//如果还有要处理的字符就返回true
+        return true;
     }
 
     /**
@@ -59,16 +71,16 @@ public class WordCounterSpliterator implements Spliterator<Character> {
          * 当前位置到拆分位置的子串；把当前位置this设为拆分位置，因为之前的部分将由新
          * Spliterator来处理，最后返回。
          */
-        int currentSize = string.length() - currentChar;
+        int currentSize = end - currentChar;
         if(currentSize<10){ return null;}
         //返回 null 表示解析的String，已经拆分的足够小了，可以顺序处理
         for(int splitPos = currentSize/2 + currentChar;//从中间开始试探
-                splitPos<string.length();splitPos++){
+                splitPos<end;splitPos++){
             if(Character.isWhitespace(string.charAt(splitPos))){//拿到这个位置的char位置
                 //如果是空格 拆分成新的Spliterator
+                //原来用substring复制出子串，现在共享同一个String，只记录区间
                 Spliterator<Character> spliterator
-                         = new WordCounterSpliterator(string.substring(currentChar,
-                        splitPos));
+                        = new WordCounterSpliterator(string,currentChar,splitPos);
                 currentChar = splitPos;//重新设置位置，因为 old currentChar - splitPos 已经被处理
                 return  spliterator;
             }
@@ -88,7 +100,7 @@ public class WordCounterSpliterator implements Spliterator<Character> {
          * 还需要遍历的元素的estimatedSize就是这个Spliterator解析的String的总长度和
          * 当前遍历的位置的差。
          */
-        return string.length()-currentChar;
+        return end-currentChar;
     }
 
     /**
@@ -0,0 +1,116 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 23:05
+ */
+public class CachingShopTest
+{
+    /**
+     * 不休眠、价格固定的商店，记录每个方法被调用的次数
+     */
+    static class CountingShop extends Shop
+    {
+        final AtomicInteger prices = new AtomicInteger();
+        final AtomicInteger quotes = new AtomicInteger();
+        final AtomicInteger bulk = new AtomicInteger();
+
+        CountingShop(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public double getPrice(String product)
+        {
+            prices.incrementAndGet();
+            return 12.5;
+        }
+
+        @Override
+        public String getPriceEnum(String product)
+        {
+            quotes.incrementAndGet();
+            return QuoteCodec.format(getName(), 12.5, Discount.Code.SILVER);
+        }
+
+        @Override
+        public List<String> getPricesEnum(Collection<String> products)
+        {
+            bulk.incrementAndGet();
+            List<String> result = new ArrayList<>();
+            for (String product : products) {
+                result.add(QuoteCodec.format(getName(), product.length(), Discount.Code.NONE));
+            }
+            return result;
+        }
+    }
+
+    private static String unique(String prefix)
+    {
+        return prefix + System.nanoTime();
+    }
+
+    @Test
+    public void binaryQuotesComeFromDelegateAndCache()
+    {
+        CountingShop delegate = new CountingShop(unique("Binary"));
+        CachingShop shop = new CachingShop(delegate);
+        String product = unique("phone");
+
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer buffer = QuoteCodec.buffer();
+            shop.getPriceEnum(product, buffer);
+            buffer.flip();
+            Quote quote = Quote.decode(buffer);
+            assertEquals(delegate.getName(), quote.getShopName());
+            assertEquals(12.5, quote.getPrice(), 0.0);
+            assertEquals(Discount.Code.SILVER, quote.getDicountCode());
+        }
+        assertEquals(1, delegate.quotes.get());
+    }
+
+    @Test
+    public void bulkQuotesOnlyFetchMissingProducts()
+    {
+        CountingShop delegate = new CountingShop(unique("Bulk"));
+        CachingShop shop = new CachingShop(delegate);
+        String cached = unique("aa");
+        String missing = unique("bbbb");
+        shop.getPriceEnum(cached);
+
+        List<String> quotes = shop.getPricesEnum(Arrays.asList(cached, missing));
+
+        assertEquals(QuoteCodec.format(delegate.getName(), 12.5, Discount.Code.SILVER), quotes.get(0));
+        assertEquals(QuoteCodec.format(delegate.getName(), missing.length(), Discount.Code.NONE), quotes.get(1));
+        assertEquals(1, delegate.bulk.get());
+        //第二次全部命中，不再调用delegate
+        assertEquals(quotes, shop.getPricesEnum(Arrays.asList(cached, missing)));
+        assertEquals(1, delegate.bulk.get());
+    }
+
+    @Test
+    public void asyncPricesGoThroughCache() throws Exception
+    {
+        CountingShop delegate = new CountingShop(unique("Async"));
+        CachingShop shop = new CachingShop(delegate);
+        String product = unique("phone");
+
+        assertEquals(12.5, shop.getPriceAsync(product).get(5, TimeUnit.SECONDS), 0.0);
+        assertEquals(12.5, shop.getPriceAsync(product, 5, TimeUnit.SECONDS).get(), 0.0);
+        assertEquals(12.5, shop.getPrice(product), 0.0);
+        assertEquals(1, delegate.prices.get());
+    }
+}
@@ -0,0 +1,85 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 22:45
+ */
+public class CircuitBreakerTest
+{
+    @Test
+    public void opensAfterConsecutiveFailures()
+    {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1, TimeUnit.MINUTES);
+        breaker.onFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void successResetsFailureCount()
+    {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1, TimeUnit.MINUTES);
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenAllowsOneTrial() throws InterruptedException
+    {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        breaker.onFailure(breaker.tryAcquire());
+        Thread.sleep(40);
+
+        long trial = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, trial);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        breaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedTrialReopens() throws InterruptedException
+    {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        breaker.onFailure(breaker.tryAcquire());
+        Thread.sleep(40);
+
+        breaker.onFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void lateResultsFromEarlierGenerationAreIgnored() throws InterruptedException
+    {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        long slow = breaker.tryAcquire();//CLOSED时放出去，很久之后才返回
+        breaker.onFailure(breaker.tryAcquire());
+        Thread.sleep(40);
+        long trial = breaker.tryAcquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,109 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 09:10
+ */
+public class HedgerTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private static Supplier<String> sleeping(long millis, String value)
+    {
+        return () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return value;
+        };
+    }
+
+    /**
+     * 先用快的调用攒够样本，p95才有值
+     */
+    private static void warmUp(Hedger hedger, ExecutorService executor)
+    {
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            calls.add(hedger.call("shop", sleeping(10, "fast"), executor));
+        }
+        calls.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    public void noHedgeBeforeEnoughSamples()
+    {
+        Hedger hedger = new Hedger(0.95, 1.0);
+        assertEquals("slow", hedger.call("shop", sleeping(50, "slow"), () -> "hedge", executor).join());
+        assertEquals(0, hedger.getHedges());
+    }
+
+    @Test
+    public void hedgesAfterObservedQuantileAndInterruptsLoser() throws Exception
+    {
+        Hedger hedger = new Hedger(0.95, 1.0);
+        warmUp(hedger, executor);
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        String value = hedger.call("shop", () -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "primary";
+        }, () -> "hedge", executor).join();
+
+        assertEquals("hedge", value);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+        assertEquals(1, hedger.getHedges());
+        assertTrue("loser was not interrupted", interrupted.await(1, TimeUnit.SECONDS));
+        //result完成之后才给getHedgeWins计数，调用方可能先醒过来
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (hedger.getHedgeWins() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, hedger.getHedgeWins());
+    }
+
+    @Test
+    public void hedgesStayWithinRatio()
+    {
+        Hedger hedger = new Hedger(0.95, 0.1);
+        warmUp(hedger, executor);
+
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            calls.add(hedger.call("shop", sleeping(300, "primary"), () -> "hedge", executor));
+        }
+        calls.forEach(CompletableFuture::join);
+
+        assertEquals(40, hedger.getRequests());
+        assertTrue(hedger.getHedges() >= 1);
+        assertTrue("hedges=" + hedger.getHedges(), hedger.getHedges() <= 0.1 * hedger.getRequests());
+    }
+}
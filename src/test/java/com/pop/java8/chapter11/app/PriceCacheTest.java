@@ -0,0 +1,144 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 22:40
+ */
+public class PriceCacheTest
+{
+    @Test
+    public void entriesExpireAfterTtl() throws InterruptedException
+    {
+        PriceCache<String, Integer> cache = new PriceCache<>(50, TimeUnit.MILLISECONDS, 10, PriceCache.Eviction.LRU);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        Thread.sleep(80);
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(2, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyAccessed() throws InterruptedException
+    {
+        PriceCache<String, String> cache = new PriceCache<>(1, TimeUnit.MINUTES, 2, PriceCache.Eviction.LRU);
+        cache.get("a", k -> k);
+        Thread.sleep(2);
+        cache.get("b", k -> k);
+        Thread.sleep(2);
+        cache.get("a", k -> k);//a比b更近被访问
+        Thread.sleep(2);
+        cache.get("c", k -> k);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertNotNull(cache.getIfPresent("c"));
+    }
+
+    @Test
+    public void lfuEvictsLeastFrequentlyAccessed() throws InterruptedException
+    {
+        PriceCache<String, String> cache = new PriceCache<>(1, TimeUnit.MINUTES, 2, PriceCache.Eviction.LFU);
+        cache.get("a", k -> k);
+        cache.get("a", k -> k);
+        cache.get("a", k -> k);
+        Thread.sleep(2);
+        cache.get("b", k -> k);//b最近才访问，但只访问过一次
+        Thread.sleep(2);
+        cache.get("c", k -> k);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void waitersOnInFlightLoadAreCountedAsCoalesced() throws Exception
+    {
+        PriceCache<String, Integer> cache = new PriceCache<>(1, TimeUnit.MINUTES, 10, PriceCache.Eviction.LRU);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> cache.get("a", k -> {
+            loading.countDown();
+            await(release);
+            return loads.incrementAndGet();
+        }));
+        loading.await();
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> cache.get("a", k -> loads.incrementAndGet()));
+        while (cache.getCoalesced() == 0){
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, (int) second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCoalesced());
+    }
+
+    @Test
+    public void failedLoadsAreNotCached()
+    {
+        PriceCache<String, Integer> cache = new PriceCache<>(1, TimeUnit.MINUTES, 10, PriceCache.Eviction.LRU);
+        try {
+            cache.get("a", k -> { throw new IllegalStateException("down"); });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, (int) cache.get("a", k -> 2));
+    }
+
+    @Test
+    public void putShortensTtlByAge()
+    {
+        PriceCache<String, Integer> cache = new PriceCache<>(1, TimeUnit.SECONDS, 10, PriceCache.Eviction.LRU);
+        cache.put("old", 1, 2, TimeUnit.SECONDS);
+        cache.put("fresh", 2, 100, TimeUnit.MILLISECONDS);
+
+        assertNull(cache.getIfPresent("old"));
+        assertEquals(2, (int) cache.getIfPresent("fresh"));
+    }
+
+    @Test
+    public void putWithExplicitTtlOutlivesCacheTtl()
+    {
+        PriceCache<String, Integer> cache = new PriceCache<>(1, TimeUnit.SECONDS, 10, PriceCache.Eviction.LRU);
+        cache.put("replayed", 1, 60, 2, TimeUnit.SECONDS);
+        cache.put("expired", 2, 60, 61, TimeUnit.SECONDS);
+
+        assertEquals(1, (int) cache.getIfPresent("replayed"));
+        assertNull(cache.getIfPresent("expired"));
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 23:20
+ */
+public class QuoteCodecTest
+{
+    private static final double[] TIES = {1.005, 2.675, 0.125, 1.115, 10.245, 0.005, 123.455};
+
+    @Test
+    public void formatRoundsLikeStringFormat()
+    {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            assertFormat(random.nextDouble() * 250);
+        }
+        for (double price : TIES) {
+            assertFormat(price);
+        }
+    }
+
+    @Test
+    public void binaryAndTextAgreeOnRoundedPrice()
+    {
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            assertSamePrice(random.nextDouble() * 250);
+        }
+        for (double price : TIES) {
+            assertSamePrice(price);
+        }
+    }
+
+    @Test
+    public void parseReadsWhatFormatWrites()
+    {
+        Quote quote = QuoteCodec.parse(QuoteCodec.format("BestPrice", 123.256, Discount.Code.PLATINUM));
+        assertEquals("BestPrice", quote.getShopName());
+        assertEquals(123.26, quote.getPrice(), 0.0);
+        assertEquals(Discount.Code.PLATINUM, quote.getDicountCode());
+    }
+
+    private static void assertFormat(double price)
+    {
+        assertEquals(String.format(Locale.ROOT, "%s:%.2f:%s", "Shop", price, Discount.Code.NONE),
+                QuoteCodec.format("Shop", price, Discount.Code.NONE));
+    }
+
+    private static void assertSamePrice(double price)
+    {
+        ByteBuffer buffer = QuoteCodec.buffer();
+        QuoteCodec.encode("Shop", price, Discount.Code.NONE, buffer);
+        buffer.flip();
+        double binary = QuoteCodec.decode(buffer).getPrice();
+        double text = QuoteCodec.parse(QuoteCodec.format("Shop", price, Discount.Code.NONE)).getPrice();
+        assertEquals(Double.doubleToLongBits(text), Double.doubleToLongBits(binary));
+    }
+}
@@ -0,0 +1,151 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 11:00
+ */
+public class QuoteLogTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Quote quote(String shop, double price)
+    {
+        return new Quote(shop, price, Discount.Code.SILVER);
+    }
+
+    /**
+     * 回放出来的记录，格式为 商品/商店/价格/时间戳
+     */
+    private static List<String> replay(Path path) throws IOException
+    {
+        List<String> records = new ArrayList<>();
+        QuoteLog.open(path, 1L << 20, (product, quote, timestamp) ->
+                records.add(product + "/" + quote.getShopName() + "/" + quote.getPrice() + "/"
+                        + quote.getDicountCode() + "/" + timestamp)).close();
+        return records;
+    }
+
+    private static void write(Path path, long position, ByteBuffer bytes) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    @Test
+    public void replaysRecordsInWriteOrder() throws IOException
+    {
+        Path path = folder.getRoot().toPath().resolve("quotes.log");
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            log.append("myPhone", quote("BestPrice", 123.26), 1L);
+            log.append("myPhone", quote("LetsSaveBig", 99.5), 2L);
+            log.append("myPad", quote("BestPrice", 10.0), 3L);
+            assertEquals(3, log.getAppended());
+        }
+
+        assertEquals(Arrays.asList(
+                "myPhone/BestPrice/123.26/SILVER/1",
+                "myPhone/LetsSaveBig/99.5/SILVER/2",
+                "myPad/BestPrice/10.0/SILVER/3"), replay(path));
+    }
+
+    @Test
+    public void corruptTailRecordIsDroppedAndOverwritten() throws IOException
+    {
+        Path path = folder.getRoot().toPath().resolve("quotes.log");
+        long tail;
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            log.append("myPhone", quote("BestPrice", 123.26), 1L);
+            tail = log.size();
+            log.append("myPhone", quote("LetsSaveBig", 99.5), 2L);
+        }
+        //改掉第二条记录体中的一个字节，CRC对不上
+        write(path, tail + 8 + 3, ByteBuffer.wrap(new byte[]{0x7F}));
+
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            assertEquals(tail, log.size());
+            log.append("myPad", quote("BuyItAll", 10.0), 3L);
+        }
+        assertEquals(Arrays.asList("myPhone/BestPrice/123.26/SILVER/1", "myPad/BuyItAll/10.0/SILVER/3"), replay(path));
+    }
+
+    @Test
+    public void truncatedTailRecordIsDroppedAndOverwritten() throws IOException
+    {
+        Path path = folder.getRoot().toPath().resolve("quotes.log");
+        long tail;
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            log.append("myPhone", quote("BestPrice", 123.26), 1L);
+            tail = log.size();
+            log.append("myPhone", quote("LetsSaveBig", 99.5), 2L);
+        }
+        //第二条记录只写了一半：文件在记录体中间结束
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(tail + 8 + 5);
+        }
+
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            assertEquals(tail, log.size());
+            log.append("myPad", quote("BuyItAll", 10.0), 3L);
+        }
+        assertEquals(Arrays.asList("myPhone/BestPrice/123.26/SILVER/1", "myPad/BuyItAll/10.0/SILVER/3"), replay(path));
+    }
+
+    @Test
+    public void compactionKeepsLatestRecordPerShopAndProduct() throws IOException
+    {
+        Path path = folder.getRoot().toPath().resolve("quotes.log");
+        try (QuoteLog log = QuoteLog.open(path, 1L << 20, (product, quote, timestamp) -> {})) {
+            log.append("myPhone", quote("BestPrice", 100), 1L);
+            log.append("myPhone", quote("LetsSaveBig", 90), 2L);
+            log.append("myPad", quote("BestPrice", 50), 3L);
+            log.append("myPhone", quote("BestPrice", 110), 4L);
+            long before = log.size();
+
+            log.compact();
+
+            assertEquals(1, log.getCompactions());
+            assertTrue(log.size() < before);
+            log.append("myPad", quote("LetsSaveBig", 40), 5L);
+        }
+        assertEquals(Arrays.asList(
+                "myPhone/LetsSaveBig/90.0/SILVER/2",
+                "myPad/BestPrice/50.0/SILVER/3",
+                "myPhone/BestPrice/110.0/SILVER/4",
+                "myPad/LetsSaveBig/40.0/SILVER/5"), replay(path));
+    }
+
+    @Test
+    public void compactsAutomaticallyPastThreshold() throws IOException
+    {
+        Path path = folder.getRoot().toPath().resolve("quotes.log");
+        try (QuoteLog log = QuoteLog.open(path, 1024, (product, quote, timestamp) -> {})) {
+            for (int i = 0; i < 100; i++) {
+                log.append("myPhone", quote("BestPrice", i), i);
+            }
+            assertTrue(log.getCompactions() > 0);
+            assertTrue(log.size() <= 1024);
+        }
+        //最后一次压缩之后追加的记录要等下一次压缩才会被合并
+        List<String> records = replay(path);
+        assertTrue(records.size() < 100);
+        assertEquals("myPhone/BestPrice/99.0/SILVER/99", records.get(records.size() - 1));
+    }
+}
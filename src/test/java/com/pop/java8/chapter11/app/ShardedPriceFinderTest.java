@@ -0,0 +1,62 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/19 10:30
+ */
+public class ShardedPriceFinderTest
+{
+    private static final List<String> SHOPS = Arrays.asList("BestPrice", "LetsSaveBig", "MyFavoriteShop", "BuyItAll");
+
+    private ShardedPriceFinder finder;
+
+    @Before
+    public void startWorkers() throws Exception
+    {
+        finder = ShardedPriceFinder.start(SHOPS, 2);
+    }
+
+    @After
+    public void closeWorkers()
+    {
+        finder.close();
+    }
+
+    private static List<String> shopNames(List<Quote> quotes)
+    {
+        return quotes.stream().map(Quote::getShopName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void shopsAreSplitRoundRobin()
+    {
+        assertEquals(Arrays.asList("BestPrice", "MyFavoriteShop"), finder.getAssignment().get(0));
+        assertEquals(Arrays.asList("LetsSaveBig", "BuyItAll"), finder.getAssignment().get(1));
+        assertEquals(SHOPS, shopNames(finder.findQuotes("myPhone").join()));
+    }
+
+    @Test
+    public void killedWorkerShopsMoveToSurvivor()
+    {
+        finder.kill(0);
+
+        //连接失败时才发现工作进程0已经退出，它的商店在工作进程1上重试
+        assertEquals(SHOPS, shopNames(finder.findQuotes("myPhone").join()));
+        assertEquals(Collections.singletonMap(1, SHOPS), finder.getAssignment());
+        assertEquals(2, finder.getReassigned());
+
+        assertEquals(SHOPS, shopNames(finder.findQuotes("myPhone").join()));
+        assertEquals(2, finder.getReassigned());
+    }
+}
@@ -0,0 +1,100 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 23:40
+ */
+public class ShopGuardTest
+{
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void permitIsHeldUntilCancelledTaskEnds() throws Exception
+    {
+        ShopGuard guard = new ShopGuard("s", new CircuitBreaker(5, 1, TimeUnit.MINUTES), 1, 1, TimeUnit.MINUTES);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> running = guard.supplyAsync(() -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }, executor);
+        started.await();
+        running.cancel(true);
+
+        //任务还在执行，舱壁不能放进第二个调用
+        assertEquals(1, guard.getInFlight());
+        assertTrue(guard.supplyAsync(() -> 2, executor).isCompletedExceptionally());
+
+        release.countDown();
+        assertEquals(2, (int) waitForPermit(guard).supplyAsync(() -> 2, executor).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queueWaitIsNotCountedAsSlowCall() throws Exception
+    {
+        ShopGuard guard = new ShopGuard("s", new CircuitBreaker(1, 1, TimeUnit.MINUTES), 10, 50, TimeUnit.MILLISECONDS);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> await(release));//占住唯一的线程
+        CompletableFuture<Integer> queued = guard.supplyAsync(() -> 1, executor);
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(1, (int) queued.get(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    public void slowCallOpensBreaker() throws Exception
+    {
+        ShopGuard guard = new ShopGuard("s", new CircuitBreaker(1, 1, TimeUnit.MINUTES), 10, 10, TimeUnit.MILLISECONDS);
+        guard.supplyAsync(() -> { sleep(50); return 1; }, executor).get(5, TimeUnit.SECONDS);
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+        assertTrue(guard.supplyAsync(() -> 1, executor).isCompletedExceptionally());
+    }
+
+    private static ShopGuard waitForPermit(ShopGuard guard) throws InterruptedException
+    {
+        while (guard.getInFlight() > 0){
+            Thread.sleep(1);
+        }
+        return guard;
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis)
+    {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
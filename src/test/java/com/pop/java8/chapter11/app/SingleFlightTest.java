@@ -0,0 +1,96 @@
+package com.pop.java8.chapter11.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 22:30
+ */
+public class SingleFlightTest
+{
+    @Test
+    public void concurrentCallsShareOneLoad()
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = flight.execute("k", () -> { loads.incrementAndGet(); return source; });
+        CompletableFuture<Integer> second = flight.execute("k", () -> { loads.incrementAndGet(); return source; });
+
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getShared());
+        assertNotSame(first, second);
+        source.complete(42);
+        assertEquals(42, (int) first.join());
+        assertEquals(42, (int) second.join());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    public void cancellingOneCallerDoesNotAffectOthers()
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = flight.execute("k", () -> source);
+        CompletableFuture<Integer> second = flight.execute("k", () -> source);
+        assertTrue(first.cancel(true));
+
+        //被取消的副本不会留在inFlight里，后来的调用方仍然搭上同一个请求
+        CompletableFuture<Integer> third = flight.execute("k", CompletableFuture::new);
+        assertEquals(1, flight.getInFlight());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        source.complete(7);
+        assertTrue(first.isCancelled());
+        assertEquals(7, (int) second.join());
+        assertEquals(7, (int) third.join());
+    }
+
+    @Test
+    public void completingOneCallerDoesNotAffectOthers()
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = flight.execute("k", () -> source);
+        CompletableFuture<Integer> second = flight.execute("k", () -> source);
+        first.obtrudeValue(-1);
+
+        source.complete(7);
+        assertEquals(-1, (int) first.join());
+        assertEquals(7, (int) second.join());
+    }
+
+    @Test
+    public void keyIsReleasedAfterFailure()
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> failed = flight.execute("k", () -> { throw new IllegalStateException("down"); });
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, flight.getInFlight());
+        assertEquals(1, (int) flight.execute("k", () -> CompletableFuture.completedFuture(1)).join());
+    }
+
+    @Test
+    public void nullFromLoaderFailsAndReleasesKey()
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> failed = flight.execute("k", () -> null);
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, flight.getInFlight());
+        assertEquals(2, (int) flight.execute("k", () -> CompletableFuture.completedFuture(2)).join());
+    }
+}
@@ -0,0 +1,90 @@
+package com.pop.java8.chapter7;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 22:50
+ */
+public class ParallelReducerTest
+{
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown()
+    {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void longSumMatchesSequential()
+    {
+        long[] numbers = LongStream.rangeClosed(1, 1_000_000).toArray();
+        assertEquals(500_000_500_000L, ParallelReducer.sum(numbers));
+        assertEquals(500_000_500_000L, ParallelReducer.reduce(POOL, numbers, 0, numbers.length, 0L, Long::sum));
+    }
+
+    @Test
+    public void intReduceHonoursSubRange()
+    {
+        int[] numbers = IntStream.range(0, 100_000).toArray();
+        assertEquals(99_999, ParallelReducer.reduce(POOL, numbers, 10, numbers.length, Integer.MIN_VALUE, Math::max));
+        assertEquals(10 + 11 + 12, ParallelReducer.reduce(POOL, numbers, 10, 13, 0, Integer::sum));
+    }
+
+    @Test
+    public void objectReduceKeepsEncounterOrder()
+    {
+        String[] letters = new String[50_000];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = String.valueOf((char) ('a' + i % 26));
+            expected.append(letters[i]);
+        }
+        assertEquals(expected.toString(), ParallelReducer.reduce(POOL, letters, 0, letters.length, "", String::concat));
+    }
+
+    @Test
+    public void doubleSumOfSmallArray()
+    {
+        assertEquals(6.0, ParallelReducer.sum(new double[]{1.0, 2.0, 3.0}), 0.0);
+    }
+
+    @Test
+    public void reduceRangeAppliesMapper()
+    {
+        long n = 200_000;
+        long squares = ParallelReducer.reduceRange(POOL, 0, n, 0L, i -> i * i, Long::sum);
+        assertEquals((n - 1) * n * (2 * n - 1) / 6, squares);
+        double halves = ParallelReducer.reduceRangeToDouble(POOL, 0, n, 0.0, i -> 0.5, Double::sum);
+        assertEquals(n / 2.0, halves, 0.0);
+    }
+
+    @Test
+    public void sumRangeIsClosedInterval()
+    {
+        assertEquals(0L, ParallelReducer.sumRange(POOL, 0));
+        assertEquals(1L, ParallelReducer.sumRange(POOL, 1));
+        long n = 10_000_000;
+        assertEquals(n * (n + 1) / 2, ParallelReducer.sumRange(POOL, n));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void rejectsRangeOutsideArray()
+    {
+        ParallelReducer.reduce(POOL, new long[10], 5, 11, 0L, Long::sum);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvertedRange()
+    {
+        ParallelReducer.reduceRange(POOL, 10, 5, 0L, i -> i, Long::sum);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pop.java8.chapter7;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 23:00
+ */
+public class ParallelWordCounterTest
+{
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown()
+    {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void countsShortText()
+    {
+        assertEquals(0, ParallelWordCounter.count(POOL, ""));
+        assertEquals(0, ParallelWordCounter.count(POOL, " \t\n "));
+        assertEquals(19, ParallelWordCounter.count(POOL, SpliteratorDemo.SENTENCE));
+        assertEquals(3, ParallelWordCounter.count(POOL, "  one\ttwo\nthree  "));
+    }
+
+    @Test
+    public void splitsNeverCutWords()
+    {
+        String text = randomText(2_000_000);
+        assertEquals(sequentialCount(text), ParallelWordCounter.count(POOL, text));
+    }
+
+    @Test
+    public void singleLongWordIsOneWord()
+    {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            word.append('x');
+        }
+        assertEquals(1, ParallelWordCounter.count(POOL, word));
+    }
+
+    @Test
+    public void countsMappedFile() throws IOException
+    {
+        String text = randomText(500_000);
+        Path file = Files.createTempFile("words", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            assertEquals(sequentialCount(text), ParallelWordCounter.count(POOL, file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String randomText(int length)
+    {
+        Random random = new Random(42);
+        char[] alphabet = "abcdefg  \t\n".toCharArray();
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static long sequentialCount(String text)
+    {
+        long words = 0;
+        boolean lastSpace = true;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if(lastSpace && !space) words++;
+            lastSpace = space;
+        }
+        return words;
+    }
+}
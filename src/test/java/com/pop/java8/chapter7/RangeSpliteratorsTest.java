@@ -0,0 +1,90 @@
+package com.pop.java8.chapter7;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+/**
+ * @author Pop
+ * @date 2026/10/18 22:55
+ */
+public class RangeSpliteratorsTest
+{
+    @Test
+    public void arithmeticMatchesIterate()
+    {
+        long[] expected = LongStream.iterate(3, i -> i + 4).limit(1000).toArray();
+        assertArrayEquals(expected, RangeSpliterators.arithmetic(3L, 4L, 1000).toArray());
+        assertArrayEquals(expected, RangeSpliterators.arithmetic(3L, 4L, 1000).parallel().toArray());
+    }
+
+    @Test
+    public void parallelSumOfLongRange()
+    {
+        long n = 10_000_000;
+        assertEquals(n * (n + 1) / 2, RangeSpliterators.arithmetic(1L, 1L, n).parallel().sum());
+        assertEquals(5050, RangeSpliterators.arithmetic(1, 1, 100).parallel().sum());
+    }
+
+    @Test
+    public void splitHalvesExactly()
+    {
+        Spliterator.OfLong right = RangeSpliterators.arithmetic(0L, 1L, 11).spliterator();
+        Spliterator.OfLong left = right.trySplit();
+
+        assertNotNull(left);
+        assertEquals(5, left.getExactSizeIfKnown());
+        assertEquals(6, right.getExactSizeIfKnown());
+        long[] first = new long[1];
+        right.tryAdvance((long v) -> first[0] = v);
+        assertEquals(5, first[0]);
+    }
+
+    @Test
+    public void singleElementDoesNotSplit()
+    {
+        assertEquals(null, RangeSpliterators.arithmetic(0L, 1L, 1).spliterator().trySplit());
+    }
+
+    @Test
+    public void increasingProgressionIsSortedAndDistinct()
+    {
+        Spliterator.OfLong increasing = RangeSpliterators.arithmetic(0L, 2L, 10).spliterator();
+        assertTrue(increasing.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT));
+
+        Spliterator.OfLong decreasing = RangeSpliterators.arithmetic(0L, -2L, 10).spliterator();
+        assertTrue(decreasing.hasCharacteristics(Spliterator.DISTINCT));
+        assertFalse(decreasing.hasCharacteristics(Spliterator.SORTED));
+
+        Spliterator.OfLong constant = RangeSpliterators.arithmetic(7L, 0L, 10).spliterator();
+        assertFalse(constant.hasCharacteristics(Spliterator.DISTINCT));
+    }
+
+    @Test
+    public void overflowingProgressionIsNotDistinct()
+    {
+        Spliterator.OfInt overflowing = RangeSpliterators.arithmetic(Integer.MAX_VALUE - 1, 1, 3).spliterator();
+        assertFalse(overflowing.hasCharacteristics(Spliterator.DISTINCT));
+        assertFalse(overflowing.hasCharacteristics(Spliterator.SORTED));
+    }
+
+    @Test
+    public void generateUsesIndex()
+    {
+        assertArrayEquals(new long[]{0, 1, 4, 9, 16}, RangeSpliterators.generate(5, i -> i * i).parallel().toArray());
+        assertEquals(0.5 * 1000, RangeSpliterators.generateDouble(1000, i -> 0.5).parallel().sum(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeCount()
+    {
+        RangeSpliterators.generate(-1, i -> i);
+    }
+}